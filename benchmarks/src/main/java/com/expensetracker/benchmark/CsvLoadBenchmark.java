@@ -0,0 +1,85 @@
+package com.expensetracker.benchmark;
+
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.service.CsvBulkImporter;
+import com.expensetracker.service.ExpenseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// CSV loading: the service's parallel mmap parser on its own, a full service
+// startup from a seed file, and the legacy line-by-line DataHelper loader.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int rows;
+
+    private Path file;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        file = DataGenerator.csv(rows);
+        // Both loaders report every load on stdout, which would flood the run log
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    // Each chunk's rows go to the blackhole, so the parse is not applied anywhere
+    @Benchmark
+    public CsvBulkImporter.Parsed bulkImporterParse(Blackhole blackhole) throws IOException {
+        return new CsvBulkImporter(100, Currency.getInstance("USD")).parse(file, rows -> {
+            blackhole.consume(rows);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public long serviceSeedLoad() throws IOException {
+        ExpenseProperties properties = new ExpenseProperties();
+        properties.getWal().setEnabled(false);
+        properties.setSeedFile(file.toString());
+        ExpenseService service = new ExpenseService(properties);
+        long count = service.getExpenseCount();
+        service.close();
+        return count;
+    }
+
+    @Benchmark
+    public List<Object> legacyLoadSeedData() {
+        List<Object> expenses = new ArrayList<>();
+        Legacy.loadSeedData(new File(file.toString()), expenses);
+        return expenses;
+    }
+}
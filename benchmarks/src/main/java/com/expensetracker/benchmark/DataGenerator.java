@@ -0,0 +1,110 @@
+package com.expensetracker.benchmark;
+
+import com.expensetracker.model.Expense;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+// Reproducible synthetic expenses. The same row count always yields the same
+// rows (fixed seed), so results from different commits or machines compare
+// like for like. Dates cover 2020-2024, amounts 0.01-500.00, and every 50th
+// description contains a comma to exercise the CSV description handling.
+public final class DataGenerator {
+
+    public static final long SEED = 0x5EED_2024L;
+
+    static final String[] CATEGORIES = {
+        "Food", "Transport", "Entertainment", "Utilities", "Rent", "Other",
+        "Shopping", "Bills", "Healthcare", "Education", "Travel"
+    };
+
+    private static final String[] WORDS = {
+        "lunch", "dinner", "taxi", "train", "movie", "groceries", "coffee", "fuel",
+        "books", "gym", "pharmacy", "flight", "hotel", "internet", "electricity", "gift"
+    };
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int DAYS = 5 * 365;
+
+    public record Row(String category, long amountCents, LocalDate date, String description) {
+
+        public String amount() {
+            long cents = amountCents % 100;
+            return amountCents / 100 + (cents < 10 ? ".0" : ".") + cents;
+        }
+    }
+
+    private DataGenerator() {
+    }
+
+    public static void generate(int count, Consumer<Row> sink) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < count; i++) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            long amountCents = 1 + random.nextLong(50_000);
+            LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            String description = WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + (i % 50 == 0 ? ", shared" : "") + " #" + i;
+            sink.accept(new Row(category, amountCents, date, description));
+        }
+    }
+
+    // Service-model rows with ids 1..count
+    public static List<Expense> expenses(int count) {
+        List<Expense> expenses = new ArrayList<>(count);
+        generate(count, row -> {
+            Expense expense = new Expense(row.category(), row.amountCents(), row.date(), row.description());
+            expense.setId((long) expenses.size() + 1);
+            expenses.add(expense);
+        });
+        return expenses;
+    }
+
+    // Rows as the legacy server's default-package Expense objects
+    public static List<Object> legacyExpenses(int count) {
+        List<Object> expenses = new ArrayList<>(count);
+        generate(count, row -> expenses.add(Legacy.newExpense(row.category(), row.amountCents(),
+                row.date().toString(), row.description())));
+        return expenses;
+    }
+
+    // A "Category,Amount,Date,Description" file with a header line. Files are
+    // cached under java.io.tmpdir so forks and later runs reuse them.
+    public static Path csv(int count) {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "expense-benchmarks");
+        Path file = dir.resolve("expenses-" + count + "-" + Long.toHexString(SEED) + ".csv");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path partial = Files.createTempFile(dir, "expenses-", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+                writer.write("Category,Amount,Date,Description\n");
+                generate(count, row -> {
+                    try {
+                        writer.write(row.category() + "," + row.amount() + "," + row.date() + ","
+                                + row.description() + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write benchmark data to " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.expensetracker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The legacy server's running aggregates: a full build from the expense list
+// (what every request used to pay) against incremental updates and reads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseCalculatorBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int rows;
+
+    private List<Object> expenses;
+    private Object calculator;
+
+    @Setup
+    public void setUp() {
+        expenses = DataGenerator.legacyExpenses(rows);
+        calculator = Legacy.calculatorOf(expenses);
+    }
+
+    @Benchmark
+    public Object build() {
+        return Legacy.calculatorOf(expenses);
+    }
+
+    // Remove and re-add a random row so the totals stay put between invocations
+    @Benchmark
+    public BigDecimal removeThenAdd() {
+        Object expense = expenses.get(ThreadLocalRandom.current().nextInt(rows));
+        Legacy.remove(calculator, expense);
+        Legacy.add(calculator, expense);
+        return Legacy.totalExpense(calculator);
+    }
+
+    @Benchmark
+    public Map<?, ?> totalByCategory() {
+        return Legacy.totalByCategory(calculator);
+    }
+
+    @Benchmark
+    public Map<?, ?> highestCategory() {
+        return Legacy.highestCategory(calculator);
+    }
+
+    @Benchmark
+    public List<?> expenseTrend() {
+        return Legacy.expenseTrend(calculator);
+    }
+}
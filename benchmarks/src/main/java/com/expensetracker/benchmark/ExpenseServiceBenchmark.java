@@ -0,0 +1,137 @@
+package com.expensetracker.benchmark;
+
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.QuerySpec;
+import com.expensetracker.service.ExpenseService;
+import com.expensetracker.service.QueryEngine;
+import com.expensetracker.service.RollupIndex;
+import com.expensetracker.store.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// CRUD and statistics on an ExpenseService preloaded with generated rows, for
+// both store layouts. The write-ahead log is off: these measure the in-memory
+// paths, not fsync latency.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"CONCURRENT", "COLUMNAR", "OFF_HEAP"})
+    ExpenseProperties.Store.Type store;
+
+    private ExpenseService service;
+    private final Expense template = new Expense("Food", 1234, LocalDate.of(2023, 6, 15), "benchmark row");
+    // Two common words in one category: the planner has to pick between four indexes
+    private final SearchIndex.Query search = new SearchIndex.Query(List.of("hotel", "lun"), "Food",
+            1_000L, 20_000L, null, null, null);
+
+    // Percentiles cannot come from rollups, so this is a full fused scan
+    private final QuerySpec percentiles = new QuerySpec();
+
+    @Setup
+    public void setUp() {
+        percentiles.setGroupBy(List.of(QuerySpec.CATEGORY, QuerySpec.MONTH));
+        percentiles.setAggregates(List.of("count", "avg", "p50", "p99"));
+        ExpenseProperties properties = new ExpenseProperties();
+        properties.getStore().setType(store);
+        properties.getWal().setEnabled(false);
+        properties.setSeedFile(DataGenerator.csv(rows).toString());
+        service = new ExpenseService(properties);
+        if (service.getExpenseCount() != rows) {
+            throw new IllegalStateException("Expected " + rows + " rows, loaded " + service.getExpenseCount());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextLong(rows);
+    }
+
+    @Benchmark
+    public Expense getById() {
+        return service.getExpenseById(randomId());
+    }
+
+    // Add and delete together keep the dataset at its nominal size
+    @Benchmark
+    public boolean addThenDelete() {
+        Expense added = service.addExpense(new Expense(template.getCategory(), template.getAmountCents(),
+                template.getDate(), template.getDescription()));
+        return service.deleteExpense(added.getId());
+    }
+
+    @Benchmark
+    public Expense update() {
+        return service.updateExpense(randomId(), template);
+    }
+
+    @Benchmark
+    public List<Expense> firstPage() {
+        return service.getExpensesPage(null, 100);
+    }
+
+    @Benchmark
+    public List<Expense> allExpenses() {
+        return service.getAllExpenses();
+    }
+
+    @Benchmark
+    public BigDecimal totalExpense() {
+        return service.getTotalExpense();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> totalByCategory() {
+        return service.getTotalByCategory();
+    }
+
+    @Benchmark
+    public Map<String, Object> highestCategory() {
+        return service.getHighestCategory();
+    }
+
+    @Benchmark
+    public List<RollupIndex.TrendPoint> monthlyTrend() {
+        return service.getTrend(RollupIndex.Granularity.MONTH, null, null, null);
+    }
+
+    @Benchmark
+    public List<Expense> searchPage() {
+        return service.search(search, 100);
+    }
+
+    @Benchmark
+    public QueryEngine.Result queryPercentiles() {
+        return service.query(percentiles);
+    }
+}
@@ -0,0 +1,77 @@
+package com.expensetracker.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Response serialization in the legacy server, both rendered to a String and
+// streamed the way ExpenseServer sends it. buildExpensesJson output grows
+// with the dataset; at 10M rows it needs a heap of several GB.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonHelperBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int rows;
+
+    private List<Object> expenses;
+    private Object calculator;
+
+    @Setup
+    public void setUp() {
+        expenses = DataGenerator.legacyExpenses(rows);
+        calculator = Legacy.calculatorOf(expenses);
+    }
+
+    @Benchmark
+    public String buildExpensesJson() {
+        return Legacy.buildExpensesJson(expenses);
+    }
+
+    // The response path: bytes streamed through the pooled buffer, no String built
+    @Benchmark
+    public void writeExpenses(Blackhole blackhole) {
+        Legacy.writeExpenses(new BlackholeOutputStream(blackhole), expenses);
+    }
+
+    @Benchmark
+    public String buildStatsJson() {
+        return Legacy.buildStatsJson(calculator);
+    }
+
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            blackhole.consume(bytes);
+            blackhole.consume(length);
+        }
+    }
+}
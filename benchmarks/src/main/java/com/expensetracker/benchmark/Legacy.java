@@ -0,0 +1,191 @@
+package com.expensetracker.benchmark;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+// The legacy server classes live in the default package, which named packages
+// cannot import. They are reached through method handles instead; static final
+// handles are constants to the JIT, so the indirection does not show up in results.
+final class Legacy {
+
+    private static final MethodHandle NEW_EXPENSE;
+    private static final MethodHandle CALCULATOR_OF;
+    private static final MethodHandle CALCULATOR_ADD;
+    private static final MethodHandle CALCULATOR_REMOVE;
+    private static final MethodHandle TOTAL_EXPENSE;
+    private static final MethodHandle TOTAL_BY_CATEGORY;
+    private static final MethodHandle EXPENSE_TREND;
+    private static final MethodHandle HIGHEST_CATEGORY;
+    private static final MethodHandle BUILD_EXPENSES_JSON;
+    private static final MethodHandle BUILD_STATS_JSON;
+    private static final MethodHandle LOAD_SEED_DATA;
+    private static final MethodHandle NEW_CATEGORY_REGISTRY;
+    private static final MethodHandle NEW_JSON_WRITER;
+    private static final MethodHandle WRITE_EXPENSES;
+    private static final MethodHandle CLOSE_JSON_WRITER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> expense = Class.forName("Expense");
+            Class<?> calculator = Class.forName("ExpenseCalculator");
+            Class<?> json = Class.forName("JsonHelper");
+            Class<?> data = Class.forName("DataHelper");
+            Class<?> writer = Class.forName("JsonWriter");
+            Class<?> registry = Class.forName("CategoryRegistry");
+
+            NEW_EXPENSE = lookup.findConstructor(expense,
+                    MethodType.methodType(void.class, String.class, long.class, String.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class, long.class, String.class, String.class));
+            CALCULATOR_OF = lookup.findStatic(calculator, "of", MethodType.methodType(calculator, List.class))
+                    .asType(MethodType.methodType(Object.class, List.class));
+            CALCULATOR_ADD = lookup.findVirtual(calculator, "add", MethodType.methodType(void.class, expense))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            CALCULATOR_REMOVE = lookup.findVirtual(calculator, "remove", MethodType.methodType(void.class, expense))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            TOTAL_EXPENSE = lookup.findVirtual(calculator, "getTotalExpense", MethodType.methodType(BigDecimal.class))
+                    .asType(MethodType.methodType(BigDecimal.class, Object.class));
+            TOTAL_BY_CATEGORY = lookup.findVirtual(calculator, "getTotalByCategory", MethodType.methodType(Map.class))
+                    .asType(MethodType.methodType(Map.class, Object.class));
+            EXPENSE_TREND = lookup.findVirtual(calculator, "getExpenseTrend", MethodType.methodType(List.class))
+                    .asType(MethodType.methodType(List.class, Object.class));
+            HIGHEST_CATEGORY = lookup.findVirtual(calculator, "getHighestCategory", MethodType.methodType(Map.class))
+                    .asType(MethodType.methodType(Map.class, Object.class));
+            BUILD_EXPENSES_JSON = lookup.findStatic(json, "buildExpensesJson",
+                    MethodType.methodType(String.class, List.class));
+            BUILD_STATS_JSON = lookup.findStatic(json, "buildStatsJson", MethodType.methodType(String.class, calculator))
+                    .asType(MethodType.methodType(String.class, Object.class));
+            LOAD_SEED_DATA = lookup.findStatic(data, "loadSeedData",
+                    MethodType.methodType(void.class, File.class, List.class, registry))
+                    .asType(MethodType.methodType(void.class, File.class, List.class, Object.class));
+            NEW_CATEGORY_REGISTRY = lookup.findConstructor(registry, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            NEW_JSON_WRITER = lookup.findConstructor(writer, MethodType.methodType(void.class, OutputStream.class))
+                    .asType(MethodType.methodType(Object.class, OutputStream.class));
+            WRITE_EXPENSES = lookup.findStatic(json, "writeExpenses", MethodType.methodType(void.class, writer, List.class))
+                    .asType(MethodType.methodType(void.class, Object.class, List.class));
+            CLOSE_JSON_WRITER = lookup.findVirtual(writer, "close", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Legacy() {
+    }
+
+    static Object newExpense(String category, long amountCents, String date, String description) {
+        try {
+            return (Object) NEW_EXPENSE.invokeExact(category, amountCents, date, description);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object calculatorOf(List<Object> expenses) {
+        try {
+            return (Object) CALCULATOR_OF.invokeExact((List) expenses);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void add(Object calculator, Object expense) {
+        try {
+            CALCULATOR_ADD.invokeExact(calculator, expense);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void remove(Object calculator, Object expense) {
+        try {
+            CALCULATOR_REMOVE.invokeExact(calculator, expense);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static BigDecimal totalExpense(Object calculator) {
+        try {
+            return (BigDecimal) TOTAL_EXPENSE.invokeExact(calculator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Map<?, ?> totalByCategory(Object calculator) {
+        try {
+            return (Map<?, ?>) (Map) TOTAL_BY_CATEGORY.invokeExact(calculator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static List<?> expenseTrend(Object calculator) {
+        try {
+            return (List<?>) (List) EXPENSE_TREND.invokeExact(calculator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Map<?, ?> highestCategory(Object calculator) {
+        try {
+            return (Map<?, ?>) (Map) HIGHEST_CATEGORY.invokeExact(calculator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static String buildExpensesJson(List<Object> expenses) {
+        try {
+            return (String) BUILD_EXPENSES_JSON.invokeExact((List) expenses);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static String buildStatsJson(Object calculator) {
+        try {
+            return (String) BUILD_STATS_JSON.invokeExact(calculator);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // Streams the expenses list the way ExpenseServer writes a response body
+    static void writeExpenses(OutputStream out, List<Object> expenses) {
+        try {
+            Object writer = (Object) NEW_JSON_WRITER.invokeExact(out);
+            WRITE_EXPENSES.invokeExact(writer, (List) expenses);
+            CLOSE_JSON_WRITER.invokeExact(writer);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void loadSeedData(File file, List<Object> expenses) {
+        try {
+            LOAD_SEED_DATA.invokeExact(file, (List) expenses, (Object) NEW_CATEGORY_REGISTRY.invokeExact());
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+}
@@ -0,0 +1,133 @@
+package com.expensetracker.loadgen;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// How one front end is driven: the request for each operation, what counts as
+// success, and how to read the rows and totals back for the final check.
+// Writes are counted as they succeed, so once the load stops the server should
+// hold exactly the starting rows plus the adds minus the deletes.
+abstract class Api {
+
+    enum Outcome {
+        OK,
+        // The row was gone by the time the request arrived, e.g. deleted by
+        // another worker; expected under concurrent writes
+        MISSED,
+        ERROR
+    }
+
+    // A request about to be sent; id is the expense it targets, or -1
+    record Call(Operation operation, HttpRequest request, long id) {}
+
+    // Read after the load has stopped. statsCount is null where /stats has no count.
+    record State(long listedRows, BigDecimal listedTotal, BigDecimal statsTotal, Long statsCount) {}
+
+    static final ObjectMapper JSON = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private static final String[] CATEGORIES = {
+        "Food", "Transport", "Entertainment", "Shopping", "Bills", "Healthcare", "Education", "Travel", "Other"
+    };
+
+    static final String[] WORDS = {
+        "lunch", "dinner", "taxi", "train", "movie", "groceries", "coffee", "fuel",
+        "books", "gym", "pharmacy", "flight", "hotel", "internet", "electricity", "gift"
+    };
+
+    // Added rows fall in 2024, so the trend and distribution stay a fixed size
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    record Row(String category, String amount, String date, String description) {}
+
+    final URI base;
+    final Duration timeout;
+    final AtomicLong rows = new AtomicLong();
+
+    Api(URI base, Duration timeout) {
+        this.base = base;
+        this.timeout = timeout;
+    }
+
+    abstract String name();
+
+    abstract Call call(Operation operation, SplittableRandom random);
+
+    abstract Outcome outcome(Call call, int status, byte[] body);
+
+    abstract String listPath();
+
+    abstract String statsPath();
+
+    // Records the rows the server starts with
+    void prepare(HttpClient client) throws IOException, InterruptedException {
+        rows.set(state(client).listedRows());
+    }
+
+    // Classifies a response and counts the writes that took effect
+    Outcome completed(Call call, int status, byte[] body) {
+        Outcome outcome = outcome(call, status, body);
+        if (outcome == Outcome.OK) {
+            if (call.operation() == Operation.ADD) {
+                rows.incrementAndGet();
+            } else if (call.operation() == Operation.DELETE) {
+                rows.decrementAndGet();
+            }
+        }
+        return outcome;
+    }
+
+    long expectedRows() {
+        return rows.get();
+    }
+
+    State state(HttpClient client) throws IOException, InterruptedException {
+        JsonNode list = get(client, listPath());
+        long count = 0;
+        BigDecimal total = BigDecimal.ZERO;
+        for (JsonNode expense : list) {
+            count++;
+            total = total.add(expense.path("amount").decimalValue());
+        }
+        JsonNode stats = get(client, statsPath());
+        JsonNode statsCount = stats.get("count");
+        return new State(count, total, stats.path("total").decimalValue(),
+                statsCount != null ? statsCount.longValue() : null);
+    }
+
+    HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(timeout);
+    }
+
+    static Row randomRow(SplittableRandom random) {
+        long cents = 1 + random.nextLong(50_000);
+        String amount = cents / 100 + (cents % 100 < 10 ? ".0" : ".") + cents % 100;
+        return new Row(CATEGORIES[random.nextInt(CATEGORIES.length)], amount,
+                FIRST_DAY.plusDays(random.nextInt(366)).toString(),
+                WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " (loadgen)");
+    }
+
+    static boolean ok(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    private JsonNode get(HttpClient client, String path) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (!ok(response.statusCode())) {
+            throw new IOException("GET " + path + " returned " + response.statusCode());
+        }
+        return JSON.readTree(response.body());
+    }
+}
@@ -0,0 +1,79 @@
+package com.expensetracker.loadgen;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// ExpenseServer's endpoints. /add and /delete take form bodies, and /delete
+// takes a list position rather than an id, so deletes pick a position below
+// the expected row count; one that another worker's delete has just moved out
+// of range gets a 400 and counts as missed.
+final class LegacyApi extends Api {
+    static final Set<Operation> SUPPORTED =
+            EnumSet.of(Operation.LIST, Operation.STATS, Operation.CATEGORIES, Operation.METRICS,
+                    Operation.ADD, Operation.DELETE);
+
+    LegacyApi(URI base, Duration timeout) {
+        super(base, timeout);
+    }
+
+    @Override
+    String name() {
+        return "legacy";
+    }
+
+    @Override
+    Call call(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case LIST -> new Call(operation, request(listPath()).GET().build(), -1);
+            case STATS -> new Call(operation, request(statsPath()).GET().build(), -1);
+            case CATEGORIES -> new Call(operation, request("/categories").GET().build(), -1);
+            case METRICS -> new Call(operation, request("/metrics").GET().build(), -1);
+            case ADD -> {
+                Row row = randomRow(random);
+                yield new Call(operation, form("/add", "category=" + encode(row.category())
+                        + "&amount=" + row.amount() + "&date=" + row.date()
+                        + "&description=" + encode(row.description())), -1);
+            }
+            case DELETE -> {
+                long position = random.nextLong(Math.max(1, rows.get()));
+                yield new Call(operation, form("/delete", "id=" + position), position);
+            }
+            default -> throw new IllegalArgumentException(operation.key() + " is not served by the legacy server");
+        };
+    }
+
+    @Override
+    Outcome outcome(Call call, int status, byte[] body) {
+        if (ok(status)) {
+            return Outcome.OK;
+        }
+        return call.operation() == Operation.DELETE && status == 400 ? Outcome.MISSED : Outcome.ERROR;
+    }
+
+    @Override
+    String listPath() {
+        return "/expenses";
+    }
+
+    @Override
+    String statsPath() {
+        return "/stats";
+    }
+
+    private HttpRequest form(String path, String body) {
+        return request(path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
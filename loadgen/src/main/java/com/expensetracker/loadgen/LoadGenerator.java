@@ -0,0 +1,325 @@
+package com.expensetracker.loadgen;
+
+import com.expensetracker.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Load and soak tests for ExpenseServer and the Spring Boot application, each
+// started in this JVM or already running elsewhere. A run warms up, sends a
+// weighted mix of reads and writes for the set duration, then checks that the
+// rows and totals the server reports agree with the writes that succeeded, so
+// lost updates and stale caches show up as well as errors. The report (JSON,
+// to standard output or --out) has throughput, counts by status and latency
+// percentiles per operation, plus a timeline; progress goes to standard error.
+// Exits with 1 if any request failed or the check did not pass.
+//
+// Open loop (the default) sends at a fixed rate whatever the response times,
+// like independent users; closed loop has each connection wait for its
+// response before sending again, like a fixed pool of clients. See
+// OperationStats for how each corrects for coordinated omission.
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {0, 50, 75, 90, 95, 99, 99.9, 99.99, 99.999, 100};
+    private static final int ERROR_SAMPLES = 20;
+
+    private final LoadOptions options;
+    private final Api api;
+    private final HttpClient client;
+    private final PrintStream log;
+    private final Queue<String> errorSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger errorSampleCount = new AtomicInteger();
+    private final SplittableRandom seeds;
+
+    LoadGenerator(LoadOptions options, Api api, PrintStream log) {
+        this.options = options;
+        this.api = api;
+        this.log = log;
+        this.seeds = new SplittableRandom(options.seed);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(options.timeout)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Both servers log to standard output; keep it for the report alone
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        int status;
+        try (Servers.Running server = switch (options.target) {
+            case "legacy" -> Servers.legacy();
+            case "spring" -> Servers.spring(options.serverArgs);
+            default -> Servers.remote(URI.create(options.target));
+        }) {
+            Api api = options.api.equals("legacy")
+                    ? new LegacyApi(server.base(), options.timeout)
+                    : new SpringApi(server.base(), options.timeout);
+            Map<String, Object> report = new LoadGenerator(options, api, System.err).run();
+            if (options.out != null) {
+                try (OutputStream out = Files.newOutputStream(Path.of(options.out))) {
+                    Api.JSON.writerWithDefaultPrettyPrinter().writeValue(out, report);
+                }
+                System.err.println("Report written to " + options.out);
+            } else {
+                stdout.println(Api.JSON.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            }
+            boolean passed = "passed".equals(((Map<?, ?>) report.get("check")).get("result"));
+            status = (long) report.get("errors") == 0 && passed ? 0 : 1;
+        }
+        // The legacy server cannot be stopped and would keep the JVM running
+        System.exit(status);
+    }
+
+    Map<String, Object> run() throws IOException, InterruptedException {
+        api.prepare(client);
+        long startingRows = api.expectedRows();
+        log.printf("Driving %s at %s (%d rows), %s loop%n", api.name(), api.base, startingRows,
+                options.open ? "open" : "closed");
+
+        Map<Operation, OperationStats> warmup = OperationStats.forAll();
+        if (!options.warmup.isZero()) {
+            log.println("Warming up for " + options.warmup.toSeconds() + "s");
+            phase(warmup, options.warmup.toNanos(), null);
+        }
+        Map<Operation, OperationStats> measured = OperationStats.forAll();
+        if (!options.open) {
+            for (Operation operation : Operation.values()) {
+                measured.get(operation).expectedIntervalNanos = options.interval != null
+                        ? options.interval.toNanos() : warmup.get(operation).service.quantiles(0.5)[0];
+            }
+        }
+
+        log.println("Measuring for " + options.duration.toSeconds() + "s");
+        Instant startedAt = Instant.now();
+        Timeline timeline = new Timeline(log);
+        timeline.start(options.reportEvery.toNanos());
+        long started = System.nanoTime();
+        phase(measured, options.duration.toNanos(), timeline);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        List<Timeline.Window> windows = timeline.finish();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", options.target);
+        report.put("api", api.name());
+        report.put("baseUrl", api.base.toString());
+        report.put("mode", options.open ? "open" : "closed");
+        if (options.open) {
+            report.put("rate", options.rate);
+        }
+        report.put("connections", options.connections);
+        report.put("mix", mixReport());
+        report.put("startedAt", startedAt.toString());
+        report.put("warmupSeconds", options.warmup.toMillis() / 1000.0);
+        report.put("elapsedSeconds", round(elapsed));
+        report.put("java", Runtime.version().toString());
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+
+        long requests = 0;
+        long errors = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : options.mix.weights().keySet()) {
+            OperationStats stats = measured.get(operation);
+            requests += stats.requests();
+            errors += stats.errors.sum();
+            operations.put(operation.key(), operationReport(stats, elapsed));
+        }
+        report.put("requests", requests);
+        report.put("errors", errors);
+        report.put("throughput", round(requests / elapsed));
+        report.put("operations", operations);
+        report.put("timeline", windows);
+        report.put("errorSamples", List.copyOf(errorSamples));
+        report.put("check", check(startingRows, measured));
+        return report;
+    }
+
+    // Runs the workers until the deadline; each request's statistics go to stats
+    private void phase(Map<Operation, OperationStats> stats, long nanos, Timeline timeline) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + nanos;
+        AtomicLong slots = new AtomicLong();
+        double slotNanos = 1e9 / options.rate;
+        // SplittableRandom is not thread-safe; each worker gets its own, split in this thread
+        List<Thread> workers = new ArrayList<>(options.connections);
+        for (int i = 0; i < options.connections; i++) {
+            SplittableRandom random = seeds.split();
+            workers.add(new Thread(() -> work(stats, timeline, random, start, end, slots, slotNanos),
+                    "loadgen-" + i));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void work(Map<Operation, OperationStats> stats, Timeline timeline, SplittableRandom random,
+                      long start, long end, AtomicLong slots, double slotNanos) {
+        while (true) {
+            long intended;
+            if (options.open) {
+                // Send times are fixed up front. A worker still busy when its
+                // next slot comes round sends late, and the wait counts.
+                intended = start + Math.round(slots.getAndIncrement() * slotNanos);
+                if (intended >= end) {
+                    return;
+                }
+                for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intended = System.nanoTime();
+                if (intended >= end) {
+                    return;
+                }
+            }
+            Operation operation = options.mix.pick(random);
+            Api.Call call = api.call(operation, random);
+            long sent = System.nanoTime();
+            int status;
+            byte[] body = null;
+            try {
+                HttpResponse<byte[]> response = client.send(call.request(), HttpResponse.BodyHandlers.ofByteArray());
+                status = response.statusCode();
+                body = response.body();
+            } catch (IOException e) {
+                status = 0;
+                sampleError(call, e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long done = System.nanoTime();
+            Api.Outcome outcome = api.completed(call, status, body);
+            if (outcome == Api.Outcome.ERROR && status != 0) {
+                sampleError(call, "HTTP " + status);
+            }
+            stats.get(operation).record(outcome, status, done - sent, done - intended, !options.open);
+            if (timeline != null) {
+                timeline.record(done - intended, outcome == Api.Outcome.ERROR);
+            }
+        }
+    }
+
+    private void sampleError(Api.Call call, String message) {
+        if (errorSampleCount.getAndIncrement() < ERROR_SAMPLES) {
+            errorSamples.add(call.request().method() + " " + call.request().uri().getPath() + ": " + message);
+        }
+    }
+
+    // Compares what the server reports with the writes that succeeded. A write
+    // that failed in transit may or may not have been applied, which leaves the
+    // row count unknown.
+    private Map<String, Object> check(long startingRows, Map<Operation, OperationStats> measured)
+            throws IOException, InterruptedException {
+        Api.State state = api.state(client);
+        long expected = api.expectedRows();
+        List<String> problems = new ArrayList<>();
+        if (state.statsCount() != null && state.statsCount() != state.listedRows()) {
+            problems.add("/stats counts " + state.statsCount() + " rows but " + state.listedRows() + " are listed");
+        }
+        if (state.listedTotal().compareTo(state.statsTotal()) != 0) {
+            problems.add("/stats total is " + state.statsTotal() + " but the listed rows add up to "
+                    + state.listedTotal());
+        }
+        boolean unknown = false;
+        for (Operation operation : Operation.values()) {
+            unknown |= operation.write && measured.get(operation).transportFailures() > 0;
+        }
+        if (state.listedRows() != expected && !unknown) {
+            problems.add(state.listedRows() + " rows are listed but the writes that succeeded leave " + expected);
+        }
+        Map<String, Object> check = new LinkedHashMap<>();
+        check.put("result", !problems.isEmpty() ? "failed" : unknown ? "inconclusive" : "passed");
+        check.put("startingRows", startingRows);
+        check.put("expectedRows", expected);
+        check.put("listedRows", state.listedRows());
+        check.put("statsCount", state.statsCount());
+        check.put("listedTotal", state.listedTotal());
+        check.put("statsTotal", state.statsTotal());
+        check.put("problems", problems);
+        if (!problems.isEmpty()) {
+            problems.forEach(problem -> log.println("Check failed: " + problem));
+        } else {
+            log.println("Check " + check.get("result") + ": " + state.listedRows() + " rows, total " + state.statsTotal());
+        }
+        return check;
+    }
+
+    private Map<String, Object> mixReport() {
+        Map<String, Object> mix = new LinkedHashMap<>();
+        options.mix.weights().forEach((operation, weight) -> mix.put(operation.key(), weight));
+        return mix;
+    }
+
+    private static Map<String, Object> operationReport(OperationStats stats, double elapsed) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", stats.requests());
+        report.put("ok", stats.ok.sum());
+        report.put("missed", stats.missed.sum());
+        report.put("errors", stats.errors.sum());
+        report.put("throughput", round(stats.requests() / elapsed));
+        Map<String, Long> statuses = new LinkedHashMap<>();
+        stats.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count.sum()));
+        report.put("statuses", statuses);
+        if (stats.expectedIntervalNanos > 0) {
+            report.put("expectedIntervalMicros", micros(stats.expectedIntervalNanos));
+        }
+        report.put("response", histogram(stats.response));
+        report.put("service", histogram(stats.service));
+        return report;
+    }
+
+    // Count, mean and the latency at each of PERCENTILES, in microseconds
+    private static Map<String, Object> histogram(LatencyHistogram histogram) {
+        double[] quantiles = new double[PERCENTILES.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            quantiles[i] = PERCENTILES[i] / 100;
+        }
+        long[] values = histogram.quantiles(quantiles);
+        long count = histogram.count();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", count);
+        report.put("meanMicros", count > 0 ? micros(histogram.sumNanos() / count) : 0.0);
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            percentiles.put(String.valueOf(PERCENTILES[i]), micros(values[i]));
+        }
+        report.put("percentileMicros", percentiles);
+        return report;
+    }
+
+    static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
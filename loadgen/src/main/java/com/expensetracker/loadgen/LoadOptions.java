@@ -0,0 +1,130 @@
+package com.expensetracker.loadgen;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Command-line options, all --name=value. Anything after a bare "--" is passed
+// to the in-process Spring application as its own arguments.
+final class LoadOptions {
+
+    static final String USAGE = """
+            Usage: java -jar loadgen/target/loadgen.jar [options] [-- spring arguments]
+              --target=legacy|spring|URL   server to start in this JVM, or the base URL of a running one (spring)
+              --api=legacy|spring          endpoints to use against a URL target (spring)
+              --mode=open|closed           open: requests sent on a fixed schedule at --rate;
+                                           closed: each connection sends its next request on a response (open)
+              --rate=N                     open loop: requests per second across all connections (200)
+              --connections=N              concurrent requests at most (16)
+              --duration=D                 measured run, e.g. 60s, 30m, 8h (60s)
+              --warmup=D                   unmeasured run first; in closed loop it also sets the expected
+                                           interval per operation, its median service time (10s)
+              --interval=D                 closed loop: expected interval for every operation instead
+              --mix=op:weight,...          list, page, search, stats, trend, distribution, categories,
+                                           metrics, add, update, delete (legacy: list, stats, categories,
+                                           metrics, add, delete); default depends on --api
+              --report-every=D             timeline interval (10s)
+              --timeout=D                  per request (10s)
+              --seed=N                     random seed for the mix and the rows added (42)
+              --out=FILE                   write the JSON report here instead of standard output
+            """;
+
+    static final String LEGACY_MIX = "list:20,stats:30,categories:10,add:25,delete:15";
+    static final String SPRING_MIX = "list:10,page:10,search:10,stats:20,trend:5,categories:5,add:20,update:5,delete:15";
+
+    String target = "spring";
+    String api;
+    boolean open = true;
+    double rate = 200;
+    int connections = 16;
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(10);
+    Duration interval;
+    Mix mix;
+    Duration reportEvery = Duration.ofSeconds(10);
+    Duration timeout = Duration.ofSeconds(10);
+    long seed = 42;
+    String out;
+    final List<String> serverArgs = new ArrayList<>();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        String mix = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                options.serverArgs.addAll(List.of(args).subList(i + 1, args.length));
+                break;
+            }
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got '" + arg + "'");
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            try {
+                switch (name) {
+                    case "target" -> options.target = value;
+                    case "api" -> options.api = oneOf(name, value, "legacy", "spring");
+                    case "mode" -> options.open = oneOf(name, value, "open", "closed").equals("open");
+                    case "rate" -> options.rate = positive(name, Double.parseDouble(value));
+                    case "connections" -> options.connections = (int) positive(name, Integer.parseInt(value));
+                    case "duration" -> options.duration = DurationStyle.detectAndParse(value);
+                    case "warmup" -> options.warmup = DurationStyle.detectAndParse(value);
+                    case "interval" -> options.interval = DurationStyle.detectAndParse(value);
+                    case "mix" -> mix = value;
+                    case "report-every" -> options.reportEvery = DurationStyle.detectAndParse(value);
+                    case "timeout" -> options.timeout = DurationStyle.detectAndParse(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    case "out" -> options.out = value;
+                    default -> throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for --" + name + ": '" + value + "'");
+            }
+        }
+        if (!options.target.equals("legacy") && !options.target.equals("spring")) {
+            URI uri = URI.create(options.target);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new IllegalArgumentException("--target must be legacy, spring or an http:// URL");
+            }
+        } else if (options.api != null && !options.api.equals(options.target)) {
+            throw new IllegalArgumentException("--api only applies to a URL target");
+        }
+        if (options.api == null) {
+            options.api = options.target.equals("legacy") ? "legacy" : "spring";
+        }
+        if (options.duration.isZero() || options.duration.isNegative() || options.reportEvery.isZero()
+                || options.reportEvery.isNegative() || options.warmup.isNegative()) {
+            throw new IllegalArgumentException("--duration and --report-every must be positive, --warmup not negative");
+        }
+        options.mix = Mix.parse(mix != null ? mix : options.api.equals("legacy") ? LEGACY_MIX : SPRING_MIX);
+        if (options.api.equals("legacy")) {
+            for (Operation operation : options.mix.weights().keySet()) {
+                if (!LegacyApi.SUPPORTED.contains(operation)) {
+                    throw new IllegalArgumentException(operation.key() + " is not served by the legacy server");
+                }
+            }
+        }
+        return options;
+    }
+
+    private static String oneOf(String name, String value, String... allowed) {
+        for (String candidate : allowed) {
+            if (candidate.equals(value)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("--" + name + " must be one of " + String.join(", ", allowed));
+    }
+
+    private static double positive(String name, double value) {
+        if (!(value > 0)) {
+            throw new IllegalArgumentException("--" + name + " must be positive");
+        }
+        return value;
+    }
+}
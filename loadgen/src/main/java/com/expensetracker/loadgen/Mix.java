@@ -0,0 +1,64 @@
+package com.expensetracker.loadgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Weighted choice of operations, parsed from "list:20,stats:30,add:25,delete:15".
+// Weights are relative and need not add up to 100.
+final class Mix {
+    private final Operation[] operations;
+    private final int[] cumulative;
+    private final Map<Operation, Integer> weights;
+
+    private Mix(Map<Operation, Integer> weights) {
+        this.weights = weights;
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulative = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += weights.get(operations[i]);
+            cumulative[i] = sum;
+        }
+    }
+
+    static Mix parse(String spec) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] keyValue = part.split(":", 2);
+            int weight;
+            try {
+                weight = keyValue.length == 2 ? Integer.parseInt(keyValue[1].trim()) : 1;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in --mix: '" + part + "'");
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights in --mix must not be negative: '" + part + "'");
+            }
+            if (weight > 0) {
+                weights.merge(Operation.of(keyValue[0]), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("--mix needs at least one operation with a positive weight");
+        }
+        return new Mix(weights);
+    }
+
+    Operation pick(SplittableRandom random) {
+        int ticket = random.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (ticket < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    Map<Operation, Integer> weights() {
+        return weights;
+    }
+}
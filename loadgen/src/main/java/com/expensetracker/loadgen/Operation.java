@@ -0,0 +1,39 @@
+package com.expensetracker.loadgen;
+
+import java.util.Locale;
+
+// One kind of request in the mix, named in --mix by its lower-case name. The
+// legacy server has no paging, search, trend, distribution or update, so those
+// are Spring-only (see LegacyApi.SUPPORTED).
+enum Operation {
+    LIST(false),
+    PAGE(false),
+    SEARCH(false),
+    STATS(false),
+    TREND(false),
+    DISTRIBUTION(false),
+    CATEGORIES(false),
+    METRICS(false),
+    ADD(true),
+    UPDATE(true),
+    DELETE(true);
+
+    final boolean write;
+
+    Operation(boolean write) {
+        this.write = write;
+    }
+
+    String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Operation of(String key) {
+        for (Operation operation : values()) {
+            if (operation.key().equals(key.trim().toLowerCase(Locale.ROOT))) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + key + "'");
+    }
+}
@@ -0,0 +1,63 @@
+package com.expensetracker.loadgen;
+
+import com.expensetracker.metrics.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Results for one operation. service is the time from sending a request to
+// its response. response is what a user waiting on the schedule saw, and is
+// the one to read: in open-loop runs it starts at the request's intended send
+// time, so time spent queued behind a slow response counts; in closed-loop runs
+// each response longer than the expected interval also records the requests
+// that would have been sent during it (HdrHistogram's
+// recordValueWithExpectedInterval). Without that correction a stall shows up as
+// one slow sample instead of every request it held up.
+final class OperationStats {
+    final LatencyHistogram service = new LatencyHistogram();
+    final LatencyHistogram response = new LatencyHistogram();
+    final LongAdder ok = new LongAdder();
+    final LongAdder missed = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    // Status code -> responses; 0 for requests that failed or timed out
+    final Map<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+    // Closed loop only; 0 leaves response uncorrected
+    volatile long expectedIntervalNanos;
+
+    void record(Api.Outcome outcome, int status, long serviceNanos, long responseNanos, boolean correct) {
+        switch (outcome) {
+            case OK -> ok.increment();
+            case MISSED -> missed.increment();
+            case ERROR -> errors.increment();
+        }
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        service.record(serviceNanos);
+        response.record(responseNanos);
+        long interval = expectedIntervalNanos;
+        if (correct && interval > 0) {
+            for (long missing = responseNanos - interval; missing >= interval; missing -= interval) {
+                response.record(missing);
+            }
+        }
+    }
+
+    long requests() {
+        return ok.sum() + missed.sum() + errors.sum();
+    }
+
+    long transportFailures() {
+        LongAdder failed = statuses.get(0);
+        return failed != null ? failed.sum() : 0;
+    }
+
+    // Filled before the workers start and only read after
+    static Map<Operation, OperationStats> forAll() {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,81 @@
+package com.expensetracker.loadgen;
+
+import com.expensetracker.ExpenseTrackerApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Starts either server in this JVM. Both read the seed data from
+// data/expenses.csv, so run from the repository root.
+final class Servers {
+
+    // A started server; close stops it where that is possible
+    record Running(URI base, Runnable stop) implements AutoCloseable {
+        @Override
+        public void close() {
+            stop.run();
+        }
+    }
+
+    private Servers() {
+    }
+
+    // ExpenseServer is in the default package, which named packages cannot
+    // import, and has no way to stop: it listens on 8080 until the JVM exits.
+    // Set -Dexpense.executor to compare its executors.
+    static Running legacy() throws ReflectiveOperationException {
+        MethodHandle main = MethodHandles.publicLookup().findStatic(Class.forName("ExpenseServer"), "main",
+                MethodType.methodType(void.class, String[].class));
+        try {
+            main.invokeExact(new String[0]);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not start ExpenseServer", e);
+        }
+        return new Running(URI.create("http://localhost:8080"), () -> {
+        });
+    }
+
+    // The Spring Boot application on a free port, with the write-ahead log and
+    // tenant data in a temporary directory removed on close, so runs neither
+    // see nor leave behind each other's rows. args are passed on as Spring
+    // properties (--expense.store.type=offheap, --expense.wal.enabled=false, ...).
+    static Running spring(List<String> args) throws IOException {
+        Path data = Files.createTempDirectory("expense-loadgen");
+        List<String> all = new ArrayList<>(List.of("--server.port=0",
+                "--expense.wal.dir=" + data.resolve("wal"),
+                "--expense.tenants.dir=" + data.resolve("tenants")));
+        all.addAll(args);
+        ConfigurableApplicationContext context = SpringApplication.run(ExpenseTrackerApplication.class,
+                all.toArray(new String[0]));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        return new Running(URI.create("http://localhost:" + port), () -> {
+            context.close();
+            try (Stream<Path> paths = Files.walk(data)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // A server started elsewhere
+    static Running remote(URI base) {
+        return new Running(base, () -> {
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.expensetracker.loadgen;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// ExpenseController's /api endpoints, default tenant. Updates and deletes only
+// touch rows this run added: each takes an id off the queue of added rows, so
+// no two requests hold the same id, and an update puts its id back when done.
+// A delete with nothing on the queue asks for id -1 and counts as missed.
+final class SpringApi extends Api {
+    private final Queue<Long> added = new ConcurrentLinkedQueue<>();
+
+    SpringApi(URI base, Duration timeout) {
+        super(base, timeout);
+    }
+
+    @Override
+    String name() {
+        return "spring";
+    }
+
+    @Override
+    Call call(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case LIST -> get(operation, listPath());
+            case PAGE -> get(operation, "/api/expenses?limit=50");
+            case SEARCH -> get(operation, "/api/expenses/search?q=" + WORDS[random.nextInt(WORDS.length)]);
+            case STATS -> get(operation, statsPath());
+            case TREND -> get(operation, "/api/stats/trend?granularity=month");
+            case DISTRIBUTION -> get(operation, "/api/stats/distribution");
+            case CATEGORIES -> get(operation, "/api/categories");
+            case METRICS -> get(operation, "/api/metrics");
+            case ADD -> new Call(operation, json("/api/expenses", "POST", randomRow(random)), -1);
+            case UPDATE -> {
+                Long id = added.poll();
+                long target = id != null ? id : -1;
+                yield new Call(operation, json("/api/expenses/" + target, "PUT", randomRow(random)), target);
+            }
+            case DELETE -> {
+                Long id = added.poll();
+                long target = id != null ? id : -1;
+                yield new Call(operation, request("/api/expenses/" + target).DELETE().build(), target);
+            }
+        };
+    }
+
+    @Override
+    Outcome outcome(Call call, int status, byte[] body) {
+        switch (call.operation()) {
+            case ADD -> {
+                if (ok(status)) {
+                    try {
+                        added.add(JSON.readTree(body).path("expense").path("id").longValue());
+                    } catch (IOException e) {
+                        return Outcome.ERROR;
+                    }
+                }
+            }
+            case UPDATE -> {
+                if (call.id() >= 0 && status != 404) {
+                    added.add(call.id());
+                }
+            }
+            default -> {
+            }
+        }
+        if (ok(status)) {
+            return Outcome.OK;
+        }
+        return call.operation().write && call.operation() != Operation.ADD && status == 404
+                ? Outcome.MISSED : Outcome.ERROR;
+    }
+
+    @Override
+    String listPath() {
+        return "/api/expenses";
+    }
+
+    @Override
+    String statsPath() {
+        return "/api/stats";
+    }
+
+    private Call get(Operation operation, String path) {
+        return new Call(operation, request(path).GET().build(), -1);
+    }
+
+    private HttpRequest json(String path, String method, Row row) {
+        String body;
+        try {
+            body = JSON.writeValueAsString(Map.of("category", row.category(), "amount", row.amount(),
+                    "date", row.date(), "description", row.description()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return request(path)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
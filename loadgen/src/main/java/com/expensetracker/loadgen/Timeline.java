@@ -0,0 +1,100 @@
+package com.expensetracker.loadgen;
+
+import com.expensetracker.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Throughput, response-time percentiles and heap use for every interval of the
+// measured run, so a soak test shows drift (a growing p99, a heap that never
+// comes back down) that whole-run totals average away. Each interval gets a
+// fresh histogram, swapped in by a scheduler thread; a response finishing
+// during the swap may land in either interval. With an in-process server the
+// heap figure is the server's and the load generator's together. Closed-loop
+// intervals are not corrected for coordinated omission; the totals are.
+final class Timeline {
+
+    record Window(double endSeconds, long requests, long errors, double throughput,
+                  double p50Micros, double p99Micros, double maxMicros, long heapUsedMb) {}
+
+    private static final class Slice {
+        final LatencyHistogram response = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final long started = System.nanoTime();
+    }
+
+    private final AtomicReference<Slice> current = new AtomicReference<>(new Slice());
+    private final List<Window> windows = new ArrayList<>();
+    private final PrintStream log;
+    private final long started = System.nanoTime();
+    private ScheduledExecutorService scheduler;
+    private long everyNanos;
+
+    Timeline(PrintStream log) {
+        this.log = log;
+    }
+
+    void record(long responseNanos, boolean error) {
+        Slice slice = current.get();
+        slice.response.record(responseNanos);
+        if (error) {
+            slice.errors.increment();
+        }
+    }
+
+    void start(long everyNanos) {
+        this.everyNanos = everyNanos;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-timeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::roll, everyNanos, everyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Stops the scheduler and closes the last interval, unless it is only a
+    // sliver left over after the final scheduled one
+    List<Window> finish() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        roll();
+        synchronized (windows) {
+            return List.copyOf(windows);
+        }
+    }
+
+    private void roll() {
+        Slice slice = current.getAndSet(new Slice());
+        long now = System.nanoTime();
+        long requests = slice.response.count();
+        if (now - slice.started < everyNanos / 10) {
+            return;
+        }
+        long[] quantiles = slice.response.quantiles(0.5, 0.99, 1.0);
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        Window window = new Window(round((now - started) / 1e9), requests, slice.errors.sum(),
+                round(requests / ((now - slice.started) / 1e9)),
+                LoadGenerator.micros(quantiles[0]), LoadGenerator.micros(quantiles[1]),
+                LoadGenerator.micros(quantiles[2]), heap >> 20);
+        synchronized (windows) {
+            windows.add(window);
+        }
+        log.printf(Locale.ROOT, "%8.1fs %9.1f req/s %6d errors  p50 %9.1f us  p99 %9.1f us  max %9.1f us  heap %5d MB%n",
+                window.endSeconds(), window.throughput(), window.errors(), window.p50Micros(), window.p99Micros(),
+                window.maxMicros(), window.heapUsedMb());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
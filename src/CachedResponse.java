@@ -0,0 +1,147 @@
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+// One legacy endpoint's JSON, rendered once per data version with a gzip copy
+// made on first demand. ETags come from the version, so a client whose copy is
+// still current gets a 304 without anything being rendered.
+public class CachedResponse {
+
+    // Keeps ETags from one run from matching a different dataset after a restart
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    static class Body {
+        final long version;
+        final byte[] bytes;
+        private volatile byte[] gzip;
+
+        Body(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        // Racing first requests may both compress; either result is the same
+        byte[] gzip() throws IOException {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+                try (GZIPOutputStream zip = new GZIPOutputStream(out, 8192)) {
+                    zip.write(bytes);
+                }
+                compressed = out.toByteArray();
+                gzip = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    private final String name;
+    private volatile Body body;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder notModified;
+
+    public CachedResponse(String name, Metrics metrics) {
+        this.name = name;
+        String counter = "expense_response_cache_requests_total";
+        String help = "Cached reads served from a rendered body (hit), rendered (miss) or answered with 304";
+        this.hits = metrics.counter(counter, help, Metrics.labels("cache", name, "result", "hit"));
+        this.misses = metrics.counter(counter, help, Metrics.labels("cache", name, "result", "miss"));
+        this.notModified = metrics.counter(counter, help, Metrics.labels("cache", name, "result", "not_modified"));
+    }
+
+    String etag(long version, boolean gzip) {
+        return "\"" + name + "-" + EPOCH + "-" + version + (gzip ? "-gz" : "") + "\"";
+    }
+
+    // Callers hold ExpenseServer.lock so the data cannot change while rendering
+    Body get(long version, JsonWriter.JsonContent content) throws IOException {
+        Body current = body;
+        if (current != null && current.version == version) {
+            hits.increment();
+        } else {
+            misses.increment();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonWriter json = new JsonWriter(out)) {
+                content.writeTo(json);
+            }
+            current = new Body(version, out.toByteArray());
+            body = current;
+        }
+        return current;
+    }
+
+    // Answers with 304 and returns true when If-None-Match names this version
+    boolean notModified(HttpExchange exchange, long version) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String etag = etag(version, acceptsGzip(exchange));
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        notModified.increment();
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    void send(HttpExchange exchange, Body body) throws IOException {
+        boolean gzip = acceptsGzip(exchange);
+        byte[] bytes = gzip ? body.gzip() : body.bytes;
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("ETag", etag(body.version, gzip));
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    // For responses too large to cache: written as they are rendered, gzipped
+    // when accepted, so the ETag names the same encoding notModified checks for
+    void stream(HttpExchange exchange, long version, JsonWriter.JsonContent content) throws IOException {
+        boolean gzip = acceptsGzip(exchange);
+        exchange.getResponseHeaders().set("ETag", etag(version, gzip));
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (!gzip) {
+            try (JsonWriter json = JsonWriter.forResponse(exchange, 200)) {
+                content.writeTo(json);
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream zip = new GZIPOutputStream(exchange.getResponseBody(), 65536);
+             JsonWriter json = new JsonWriter(zip)) {
+            content.writeTo(json);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+import java.util.*;
+
+// Category names for the legacy server, interned to small int ids with a count
+// of the expenses using each. Adding or deleting an expense adjusts one count
+// instead of rescanning the expense list, and every expense of a category
+// shares one String. Ids are reused once a category's last expense is gone;
+// pinned presets stay listed without expenses. Callers hold ExpenseServer.lock.
+public class CategoryRegistry {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] refs = new int[16];
+    private final ArrayDeque<Integer> free = new ArrayDeque<>();
+    private int used;
+
+    public void pin(String name) {
+        acquire(name);
+    }
+
+    // Counts one more expense of the category and returns the shared name
+    public String acquire(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            refs[existing]++;
+            return names[existing];
+        }
+        int id = free.isEmpty() ? used++ : free.pop();
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            refs = Arrays.copyOf(refs, id * 2);
+        }
+        names[id] = name;
+        refs[id] = 1;
+        ids.put(name, id);
+        return name;
+    }
+
+    public void release(String name) {
+        Integer id = ids.get(name);
+        if (id != null && --refs[id] == 0) {
+            ids.remove(name);
+            names[id] = null;
+            free.push(id);
+        }
+    }
+
+    // Pinned names and categories with expenses, in id order
+    public List<String> names() {
+        List<String> listed = new ArrayList<>(ids.size());
+        for (int id = 0; id < used; id++) {
+            if (names[id] != null) {
+                listed.add(names[id]);
+            }
+        }
+        return listed;
+    }
+}
@@ -3,40 +3,53 @@ import java.util.*;
 
 public class DataHelper {
     
-    public static void loadSeedData(List<Expense> expenses, Set<String> categories) {
-        File seedFile = new File("data/expenses.csv");
+    public static void loadSeedData(List<Expense> expenses, CategoryRegistry categories) {
+        loadSeedData(new File("data/expenses.csv"), expenses, categories);
+    }
+
+    // Each loaded expense is counted in categories
+    public static void loadSeedData(File seedFile, List<Expense> expenses, CategoryRegistry categories) {
         if (seedFile.exists()) {
             try (BufferedReader br = new BufferedReader(new FileReader(seedFile))) {
                 String line;
-                boolean firstLine = true;
+                int lineNumber = 0;
+                int rejected = 0;
                 while ((line = br.readLine()) != null) {
-                    if (firstLine) {
-                        firstLine = false;
+                    lineNumber++;
+                    if (lineNumber == 1 || line.isBlank()) {
                         continue;
                     }
-                    String[] parts = line.split(",");
-                    if (parts.length == 3) {
-                        String category = parts[0].trim();
-                        double amount = Double.parseDouble(parts[1].trim());
-                        String date = parts[2].trim();
-                        String description = parts.length >= 4 ? parts[3].trim() : "";
-                        expenses.add(new Expense(category, amount, date, description));
-                        categories.add(category);
+                    // Everything after the third comma belongs to the description
+                    String[] parts = line.split(",", 4);
+                    String problem = null;
+                    if (parts.length < 3) {
+                        problem = "expected at least 3 fields";
+                    } else {
+                        try {
+                            String category = parts[0].trim();
+                            long amount = Money.parse(parts[1]);
+                            String date = java.time.LocalDate.parse(parts[2].trim()).toString();
+                            String description = parts.length >= 4 ? parts[3].trim() : "";
+                            expenses.add(new Expense(categories.acquire(category), amount, date, description));
+                        } catch (NumberFormatException e) {
+                            problem = "invalid amount '" + parts[1].trim() + "'";
+                        } catch (java.time.DateTimeException e) {
+                            problem = "invalid date '" + parts[2].trim() + "'";
+                        }
+                    }
+                    if (problem != null) {
+                        rejected++;
+                        System.out.println("Skipping seed line " + lineNumber + ": " + problem);
                     }
                 }
-                System.out.println("Loaded " + expenses.size() + " expenses from seed data");
+                System.out.println("Loaded " + expenses.size() + " expenses from seed data"
+                        + (rejected > 0 ? " (" + rejected + " rejected)" : ""));
             } catch (IOException e) {
                 System.out.println("Could not load seed data: " + e.getMessage());
             }
         }
     }
     
-    public static void extractCategories(List<Expense> expenses, Set<String> categories) {
-        for (Expense expense : expenses) {
-            categories.add(expense.getCategory());
-        }
-    }
-    
     public static Map<String, String> parseBody(String body) {
         Map<String, String> map = new HashMap<>();
         if (body == null || body.isEmpty()) return map;
@@ -0,0 +1,30 @@
+public class Expense {
+    String category;
+    // Whole cents, see Money
+    long amountCents;
+    String date;
+    String description;
+
+    public Expense(String category, long amountCents, String date, String description) {
+        this.category = category;
+        this.amountCents = amountCents;
+        this.date = date;
+        this.description = description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
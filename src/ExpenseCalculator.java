@@ -1,78 +1,133 @@
+import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
 
+// Running totals for the legacy server. Call add/remove as expenses change and
+// every statistic is answered without rescanning the expense list. Sums are
+// exact cents, added with overflow checks.
 public class ExpenseCalculator {
     
-    public static double getTotalExpense(List<Expense> expenses) {
-        return expenses.stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
+    static class CategoryTotal {
+        final String category;
+        long sumCents;
+        long count;
+
+        CategoryTotal(String category) {
+            this.category = category;
+        }
+    }
+
+    private static final Comparator<CategoryTotal> BY_SUM = (a, b) -> {
+        int bySum = Long.compare(a.sumCents, b.sumCents);
+        return bySum != 0 ? bySum : a.category.compareTo(b.category);
+    };
+
+    private long totalCents;
+    private final Map<String, CategoryTotal> byCategory = new LinkedHashMap<>();
+    private final TreeSet<CategoryTotal> ranking = new TreeSet<>(BY_SUM);
+    // month (YYYY-MM) -> {cents, count}
+    private final TreeMap<String, long[]> monthly = new TreeMap<>();
+    
+    public static ExpenseCalculator of(List<Expense> expenses) {
+        ExpenseCalculator calculator = new ExpenseCalculator();
+        for (Expense expense : expenses) {
+            calculator.add(expense);
+        }
+        return calculator;
     }
     
-    public static Map<String, Double> getTotalByCategory(List<Expense> expenses) {
-        return expenses.stream()
-                .collect(Collectors.groupingBy(
-                        Expense::getCategory,
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    public void add(Expense expense) {
+        apply(expense, expense.getAmountCents(), 1);
     }
     
-    public static List<Map<String, Object>> getExpenseTrend(List<Expense> expenses) {
-        Map<String, Double> monthlyTrend = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        e -> e.getDate().substring(0, 7), // YYYY-MM
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
-        
-        return monthlyTrend.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(entry -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("month", entry.getKey());
-                    item.put("total", entry.getValue());
-                    return item;
-                })
-                .collect(Collectors.toList());
+    public void remove(Expense expense) {
+        apply(expense, -expense.getAmountCents(), -1);
     }
     
-    public static Map<String, Object> getHighestCategory(List<Expense> expenses) {
-        Map<String, Double> byCategory = getTotalByCategory(expenses);
-        
-        if (byCategory.isEmpty()) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("category", "N/A");
-            result.put("amount", 0.0);
-            return result;
+    private void apply(Expense expense, long amount, int count) {
+        CategoryTotal categoryTotal = byCategory.computeIfAbsent(expense.getCategory(), CategoryTotal::new);
+        ranking.remove(categoryTotal);
+        categoryTotal.sumCents = Math.addExact(categoryTotal.sumCents, amount);
+        categoryTotal.count += count;
+        if (categoryTotal.count > 0) {
+            ranking.add(categoryTotal);
+        } else {
+            byCategory.remove(categoryTotal.category);
         }
         
-        Map.Entry<String, Double> highest = byCategory.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .orElse(null);
+        String month = expense.getDate().substring(0, 7); // YYYY-MM
+        long[] monthTotal = monthly.computeIfAbsent(month, m -> new long[2]);
+        monthTotal[0] = Math.addExact(monthTotal[0], amount);
+        monthTotal[1] += count;
+        if (monthTotal[1] <= 0) {
+            monthly.remove(month);
+        }
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("category", highest.getKey());
-        result.put("amount", highest.getValue());
+        totalCents = Math.addExact(totalCents, amount);
+    }
+    
+    public BigDecimal getTotalExpense() {
+        return Money.toDecimal(totalCents);
+    }
+
+    long totalCents() {
+        return totalCents;
+    }
+    
+    public Map<String, BigDecimal> getTotalByCategory() {
+        Map<String, BigDecimal> result = new LinkedHashMap<>();
+        for (CategoryTotal categoryTotal : byCategory.values()) {
+            result.put(categoryTotal.category, Money.toDecimal(categoryTotal.sumCents));
+        }
         return result;
     }
     
-    public static Map<String, Object> getLowestCategory(List<Expense> expenses) {
-        Map<String, Double> byCategory = getTotalByCategory(expenses);
-        
-        if (byCategory.isEmpty()) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("category", "N/A");
-            result.put("amount", 0.0);
-            return result;
+    public List<Map<String, Object>> getExpenseTrend() {
+        List<Map<String, Object>> trend = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : monthly.entrySet()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("month", entry.getKey());
+            item.put("total", Money.toDecimal(entry.getValue()[0]));
+            trend.add(item);
         }
-        
-        Map.Entry<String, Double> lowest = byCategory.entrySet().stream()
-                .min(Map.Entry.comparingByValue())
-                .orElse(null);
-        
+        return trend;
+    }
+    
+    public Map<String, Object> getHighestCategory() {
+        return toResult(ranking.isEmpty() ? null : ranking.last());
+    }
+    
+    public Map<String, Object> getLowestCategory() {
+        return toResult(ranking.isEmpty() ? null : ranking.first());
+    }
+    
+    // Live views for JsonHelper, which writes stats without building maps first.
+    // Callers must hold the same lock as the writers.
+    Collection<CategoryTotal> categoryTotals() {
+        return byCategory.values();
+    }
+
+    CategoryTotal highest() {
+        return ranking.isEmpty() ? null : ranking.last();
+    }
+
+    CategoryTotal lowest() {
+        return ranking.isEmpty() ? null : ranking.first();
+    }
+
+    // month (YYYY-MM) -> {cents, count}, oldest first
+    SortedMap<String, long[]> monthlyTotals() {
+        return monthly;
+    }
+    
+    private static Map<String, Object> toResult(CategoryTotal categoryTotal) {
         Map<String, Object> result = new HashMap<>();
-        result.put("category", lowest.getKey());
-        result.put("amount", lowest.getValue());
+        if (categoryTotal == null) {
+            result.put("category", "N/A");
+            result.put("amount", Money.toDecimal(0));
+        } else {
+            result.put("category", categoryTotal.category);
+            result.put("amount", Money.toDecimal(categoryTotal.sumCents));
+        }
         return result;
     }
 }
-
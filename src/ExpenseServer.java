@@ -1,56 +1,150 @@
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ExpenseServer {
     static List<Expense> expenses = new ArrayList<>();
-    static Set<String> categories = new LinkedHashSet<>();
+    // Presets plus every category with expenses, counted per add and delete
+    static CategoryRegistry categories = new CategoryRegistry();
+    static ExpenseCalculator stats = new ExpenseCalculator();
+    // Handlers run concurrently, so the shared state above is guarded by this lock.
+    // A j.u.c lock rather than synchronized so virtual threads don't pin their carrier.
+    static final ReentrantLock lock = new ReentrantLock();
+    // Bumped under the lock by every change; read endpoints cache and tag by it
+    static volatile long version;
+    // Signalled on every version bump; /stream subscribers wait on it
+    static final Condition changed = lock.newCondition();
+    static final long STREAM_WINDOW_MILLIS = 250;
+    static final long STREAM_HEARTBEAT_MILLIS = 15_000;
+    // Served by /metrics; declared before the caches, which register counters in it
+    static final Metrics metrics = new Metrics();
+    static final CachedResponse statsResponse = new CachedResponse("stats", metrics);
+    static final CachedResponse expensesResponse = new CachedResponse("expenses", metrics);
+    static final CachedResponse categoriesResponse = new CachedResponse("categories", metrics);
+    // The UI, served from memory with gzip and ETags
+    static final StaticAssets assets = new StaticAssets(new File("public"));
+    // Longer expense lists are streamed per request instead of kept in memory
+    static final int MAX_CACHED_ROWS = 100_000;
 
     public static void main(String[] args) throws Exception {
         // Preset categories
-        categories.add("Food");
-        categories.add("Transport");
-        categories.add("Entertainment");
-        categories.add("Shopping");
-        categories.add("Bills");
-        categories.add("Healthcare");
-        categories.add("Education");
-        categories.add("Travel");
-        categories.add("Other");
+        categories.pin("Food");
+        categories.pin("Transport");
+        categories.pin("Entertainment");
+        categories.pin("Shopping");
+        categories.pin("Bills");
+        categories.pin("Healthcare");
+        categories.pin("Education");
+        categories.pin("Travel");
+        categories.pin("Other");
 
         // Load seed data
+        long loadStarted = System.nanoTime();
         DataHelper.loadSeedData(expenses, categories);
-        DataHelper.extractCategories(expenses, categories);
+        stats = ExpenseCalculator.of(expenses);
+        metrics.timer("expense_csv_load", "Time to load the seed CSV and build the stats", "")
+                .record(System.nanoTime() - loadStarted);
+        registerGauges();
 
         // Start server
-        HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
-        server.createContext("/", ExpenseServer::handleUI);
-        server.createContext("/add", ExpenseServer::handleAdd);
-        server.createContext("/delete", ExpenseServer::handleDelete);
-        server.createContext("/stats", ExpenseServer::handleStats);
-        server.createContext("/expenses", ExpenseServer::handleExpenses);
-        server.createContext("/categories", ExpenseServer::handleCategories);
-        server.setExecutor(null);
+        HttpServer server = HttpServer.create(new InetSocketAddress(8080), 1024);
+        server.createContext("/", timed("ui", assets::serve));
+        server.createContext("/add", timed("add", ExpenseServer::handleAdd));
+        server.createContext("/delete", timed("delete", ExpenseServer::handleDelete));
+        server.createContext("/stats", timed("stats", ExpenseServer::handleStats));
+        server.createContext("/expenses", timed("expenses", ExpenseServer::handleExpenses));
+        server.createContext("/categories", timed("categories", ExpenseServer::handleCategories));
+        server.createContext("/stream", timed("stream", ExpenseServer::handleStream));
+        server.createContext("/metrics", timed("metrics", ExpenseServer::handleMetrics));
+        server.setExecutor(createExecutor(System.getProperty("expense.executor", "virtual")));
         server.start();
         
         System.out.println("Server started at http://localhost:8080");
     }
 
-    static void handleUI(HttpExchange exchange) throws IOException {
-        File file = new File("public/index.html");
-        if (file.exists()) {
-            byte[] response = new FileInputStream(file).readAllBytes();
-            exchange.getResponseHeaders().set("Content-Type", "text/html");
-            exchange.sendResponseHeaders(200, response.length);
-            exchange.getResponseBody().write(response);
-        } else {
-            String error = "404 - Not Found";
-            exchange.sendResponseHeaders(404, error.length());
-            exchange.getResponseBody().write(error.getBytes());
+    // -Dexpense.executor=virtual (default), pool or single. Virtual threads need
+    // Java 21; on older runtimes we fall back to a cached thread pool.
+    static ExecutorService createExecutor(String mode) {
+        switch (mode) {
+            case "single":
+                return Executors.newSingleThreadExecutor();
+            case "pool":
+                return Executors.newCachedThreadPool();
+            case "virtual":
+                try {
+                    Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                    System.out.println("Handling requests on virtual threads");
+                    return (ExecutorService) factory.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    System.out.println("Virtual threads need Java 21+, using a thread pool instead");
+                    return Executors.newCachedThreadPool();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown expense.executor: " + mode);
         }
+    }
+
+    // Times a handler and counts its responses by status class. A stream is
+    // timed until the client disconnects.
+    static HttpHandler timed(String name, HttpHandler handler) {
+        LatencyHistogram latency = metrics.timer("expense_http_request", "Time spent in each handler",
+                Metrics.labels("handler", name));
+        // Indexed by status / 100, registered on first use so unseen classes are not listed
+        LongAdder[] responses = new LongAdder[6];
+        return exchange -> {
+            long started = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } finally {
+                latency.record(System.nanoTime() - started);
+                // -1 when the handler failed before sending headers
+                int status = exchange.getResponseCode();
+                int statusClass = status > 0 ? Math.min(status / 100, 5) : 5;
+                if (responses[statusClass] == null) {
+                    responses[statusClass] = metrics.counter("expense_http_responses_total",
+                            "Responses by status class", Metrics.labels("handler", name, "status", statusClass + "xx"));
+                }
+                responses[statusClass].increment();
+            }
+        };
+    }
+
+    static void registerGauges() {
+        metrics.gauge("expense_rows", "Expenses stored", samples -> samples.add("", rowCount()));
+        // No per-row estimate here, so this includes everything else on the heap
+        metrics.gauge("expense_heap_bytes_per_row", "Heap in use divided by the number of expenses", samples -> {
+            int rows = rowCount();
+            long used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            samples.add("", rows > 0 ? (double) used / rows : 0);
+        });
+    }
+
+    static int rowCount() {
+        lock.lock();
+        try {
+            return expenses.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Prometheus text format: handler latencies and rates, rows, heap and cache hits
+    static void handleMetrics(HttpExchange exchange) throws IOException {
+        byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
         exchange.close();
     }
 
@@ -77,15 +171,26 @@ public class ExpenseServer {
         if (category.isEmpty() || amountStr.isEmpty() || date.isEmpty()) {
             response = "{\"success\": false, \"message\": \"All fields are required\"}";
             statusCode = 400;
+        } else if (!isIsoDate(date)) {
+            response = "{\"success\": false, \"message\": \"Invalid date format, expected YYYY-MM-DD\"}";
+            statusCode = 400;
         } else {
             try {
-                double amount = Double.parseDouble(amountStr);
+                long amount = Money.parse(amountStr);
                 if (amount < 0) {
                     response = "{\"success\": false, \"message\": \"Amount must be positive\"}";
                     statusCode = 400;
                 } else {
-                    expenses.add(new Expense(category, amount, date, description));
-                    categories.add(category);
+                    lock.lock();
+                    try {
+                        Expense expense = new Expense(categories.acquire(category), amount, date, description);
+                        expenses.add(expense);
+                        stats.add(expense);
+                        version++;
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
                     response = "{\"success\": true, \"message\": \"Expense added successfully\"}";
                     statusCode = 200;
                 }
@@ -98,6 +203,15 @@ public class ExpenseServer {
         sendJsonResponse(exchange, response, statusCode);
     }
 
+    // Rows are stored with their dates as given, so they are checked here as the seed loader does
+    static boolean isIsoDate(String date) {
+        try {
+            return java.time.LocalDate.parse(date).toString().equals(date);
+        } catch (java.time.format.DateTimeParseException e) {
+            return false;
+        }
+    }
+
     static void handleDelete(HttpExchange exchange) throws IOException {
         if (!exchange.getRequestMethod().equals("POST")) {
             exchange.sendResponseHeaders(405, 0);
@@ -120,9 +234,21 @@ public class ExpenseServer {
         } else {
             try {
                 int id = Integer.parseInt(idStr);
-                if (id >= 0 && id < expenses.size()) {
-                    expenses.remove(id);
-                    DataHelper.extractCategories(expenses, categories);
+                boolean removed = false;
+                lock.lock();
+                try {
+                    if (id >= 0 && id < expenses.size()) {
+                        Expense expense = expenses.remove(id);
+                        stats.remove(expense);
+                        categories.release(expense.getCategory());
+                        version++;
+                        changed.signalAll();
+                        removed = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (removed) {
                     response = "{\"success\": true, \"message\": \"Expense deleted successfully\"}";
                     statusCode = 200;
                 } else {
@@ -139,25 +265,151 @@ public class ExpenseServer {
     }
 
     static void handleStats(HttpExchange exchange) throws IOException {
-        String response = JsonHelper.buildStatsJson(expenses);
-        sendJsonResponse(exchange, response, 200);
+        if (statsResponse.notModified(exchange, version)) {
+            return;
+        }
+        CachedResponse.Body body;
+        lock.lock();
+        try {
+            body = statsResponse.get(version, json -> JsonHelper.writeStats(json, stats));
+        } finally {
+            lock.unlock();
+        }
+        statsResponse.send(exchange, body);
     }
 
     static void handleExpenses(HttpExchange exchange) throws IOException {
-        String response = JsonHelper.buildExpensesJson(expenses);
-        sendJsonResponse(exchange, response, 200);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains(ExpenseFrameWriter.MEDIA_TYPE)) {
+            handleExpenseFrames(exchange);
+            return;
+        }
+        if (expensesResponse.notModified(exchange, version)) {
+            return;
+        }
+        CachedResponse.Body body = null;
+        Expense[] snapshot = null;
+        long snapshotVersion;
+        lock.lock();
+        try {
+            snapshotVersion = version;
+            if (expenses.size() <= MAX_CACHED_ROWS) {
+                body = expensesResponse.get(version, json -> JsonHelper.writeExpenses(json, expenses));
+            } else {
+                snapshot = expenses.toArray(new Expense[0]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (body != null) {
+            expensesResponse.send(exchange, body);
+            return;
+        }
+        // Stream from the snapshot so a slow client never holds the lock
+        List<Expense> rows = Arrays.asList(snapshot);
+        expensesResponse.stream(exchange, snapshotVersion, json -> JsonHelper.writeExpenses(json, rows));
+    }
+
+    // Columnar binary frames (Accept: application/x-expense-frames), encoded from a
+    // snapshot after the lock is released and sent chunked
+    static void handleExpenseFrames(HttpExchange exchange) throws IOException {
+        Expense[] snapshot;
+        lock.lock();
+        try {
+            snapshot = expenses.toArray(new Expense[0]);
+        } finally {
+            lock.unlock();
+        }
+        exchange.getResponseHeaders().set("Content-Type", ExpenseFrameWriter.MEDIA_TYPE);
+        exchange.getResponseHeaders().set("Vary", "Accept");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 65536)) {
+            ExpenseFrameWriter frames = new ExpenseFrameWriter(out, Money.CURRENCY);
+            for (int i = 0; i < snapshot.length; i++) {
+                frames.write(i, snapshot[i]);
+            }
+            frames.finish();
+        }
+        exchange.close();
     }
 
     static void handleCategories(HttpExchange exchange) throws IOException {
-        String response = JsonHelper.buildCategoriesJson(categories);
-        sendJsonResponse(exchange, response, 200);
+        if (categoriesResponse.notModified(exchange, version)) {
+            return;
+        }
+        CachedResponse.Body body;
+        lock.lock();
+        try {
+            body = categoriesResponse.get(version, json -> JsonHelper.writeCategories(json, categories.names()));
+        } finally {
+            lock.unlock();
+        }
+        categoriesResponse.send(exchange, body);
+    }
+
+    // Server-sent events: a "stats" event with the current stats after every change.
+    // Row ids are list positions here and shift on delete, so clients re-fetch the
+    // (ETag-cached) list instead of getting row deltas. Changes within a short window
+    // are coalesced, and a slow client simply skips to the latest version, so nothing
+    // queues up per subscriber. Each subscriber holds one handler thread.
+    static void handleStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long sent = version;
+        try {
+            out.write(("event: hello\nid: " + sent + "\ndata: {\"version\": " + sent + "}\n\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                boolean updated;
+                lock.lock();
+                try {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STREAM_HEARTBEAT_MILLIS);
+                    while (version == sent && deadline - System.nanoTime() > 0) {
+                        changed.awaitNanos(deadline - System.nanoTime());
+                    }
+                    updated = version != sent;
+                } finally {
+                    lock.unlock();
+                }
+                if (!updated) {
+                    out.write(": heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    continue;
+                }
+                // Let a burst of writes settle into one event
+                Thread.sleep(STREAM_WINDOW_MILLIS);
+                CachedResponse.Body body;
+                lock.lock();
+                try {
+                    sent = version;
+                    body = statsResponse.get(sent, json -> JsonHelper.writeStats(json, stats));
+                } finally {
+                    lock.unlock();
+                }
+                String data = new String(body.bytes, StandardCharsets.UTF_8).replace("\n", "\ndata: ");
+                out.write(("event: stats\nid: " + sent + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
     }
 
     static void sendJsonResponse(HttpExchange exchange, String response, int statusCode) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(statusCode, response.length());
-        exchange.getResponseBody().write(response.getBytes());
+        exchange.sendResponseHeaders(statusCode, body.length);
+        exchange.getResponseBody().write(body);
         exchange.close();
     }
 }
@@ -1,82 +1,80 @@
+import java.io.IOException;
 import java.util.*;
 
+// Response bodies for the legacy server, written straight to a JsonWriter.
+// The build*Json methods render the same output to a String.
 public class JsonHelper {
-    
-    public static String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
-    }
-    
-    public static String buildStatsJson(List<Expense> expenses) {
-        double total = ExpenseCalculator.getTotalExpense(expenses);
-        Map<String, Double> byCategory = ExpenseCalculator.getTotalByCategory(expenses);
-        Map<String, Object> highest = ExpenseCalculator.getHighestCategory(expenses);
-        Map<String, Object> lowest = ExpenseCalculator.getLowestCategory(expenses);
-        List<Map<String, Object>> trend = ExpenseCalculator.getExpenseTrend(expenses);
-        
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-        json.append("  \"total\": ").append(total).append(",\n");
-        json.append("  \"byCategory\": {\n");
+
+    public static void writeStats(JsonWriter json, ExpenseCalculator stats) throws IOException {
+        json.raw("{\n");
+        json.raw("  \"total\": ").money(stats.totalCents()).raw(",\n");
+        json.raw("  \"currency\": ").string(Money.CURRENCY.getCurrencyCode()).raw(",\n");
+        json.raw("  \"formattedTotal\": ").string(Money.format(stats.totalCents())).raw(",\n");
+        json.raw("  \"byCategory\": {\n");
         boolean first = true;
-        for (Map.Entry<String, Double> entry : byCategory.entrySet()) {
-            if (!first) json.append(",\n");
-            json.append("    \"").append(escapeJson(entry.getKey())).append("\": ").append(entry.getValue());
+        for (ExpenseCalculator.CategoryTotal categoryTotal : stats.categoryTotals()) {
+            if (!first) json.raw(",\n");
+            json.raw("    ").string(categoryTotal.category).raw(": ").money(categoryTotal.sumCents);
             first = false;
         }
-        json.append("\n  },\n");
-        json.append("  \"highest\": {\"category\": \"").append(escapeJson((String)highest.get("category")))
-             .append("\", \"amount\": ").append(highest.get("amount")).append("},\n");
-        json.append("  \"lowest\": {\"category\": \"").append(escapeJson((String)lowest.get("category")))
-             .append("\", \"amount\": ").append(lowest.get("amount")).append("},\n");
-        json.append("  \"trend\": [\n");
+        json.raw("\n  },\n");
+        writeCategoryResult(json, "highest", stats.highest());
+        writeCategoryResult(json, "lowest", stats.lowest());
+        json.raw("  \"trend\": [\n");
         first = true;
-        for (Map<String, Object> item : trend) {
-            if (!first) json.append(",\n");
-            json.append("    {\"month\": \"").append(escapeJson((String)item.get("month")))
-                 .append("\", \"total\": ").append(item.get("total")).append("}");
+        for (Map.Entry<String, long[]> entry : stats.monthlyTotals().entrySet()) {
+            if (!first) json.raw(",\n");
+            json.raw("    {\"month\": ").string(entry.getKey())
+                .raw(", \"total\": ").money(entry.getValue()[0]).raw("}");
             first = false;
         }
-        json.append("\n  ]\n");
-        json.append("}");
-        return json.toString();
+        json.raw("\n  ]\n");
+        json.raw("}");
     }
-    
-    public static String buildExpensesJson(List<Expense> expenses) {
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
-        boolean first = true;
+
+    private static void writeCategoryResult(JsonWriter json, String name,
+                                            ExpenseCalculator.CategoryTotal categoryTotal) throws IOException {
+        json.raw("  \"").raw(name).raw("\": {\"category\": ")
+            .string(categoryTotal != null ? categoryTotal.category : "N/A")
+            .raw(", \"amount\": ").money(categoryTotal != null ? categoryTotal.sumCents : 0).raw("},\n");
+    }
+
+    public static void writeExpenses(JsonWriter json, List<Expense> expenses) throws IOException {
+        json.raw("[\n");
         for (int i = 0; i < expenses.size(); i++) {
             Expense expense = expenses.get(i);
-            if (!first) json.append(",\n");
-            json.append("  {\n");
-            json.append("    \"id\": ").append(i).append(",\n");
-            json.append("    \"category\": \"").append(escapeJson(expense.getCategory())).append("\",\n");
-            json.append("    \"amount\": ").append(expense.getAmount()).append(",\n");
-            json.append("    \"date\": \"").append(escapeJson(expense.getDate())).append("\"\n");
-            json.append("    \"description\": \"").append(escapeJson(expense.getDescription())).append("\"\n");
-            json.append("  }");
-            first = false;
+            if (i > 0) json.raw(",\n");
+            json.raw("  {\n");
+            json.raw("    \"id\": ").number(i).raw(",\n");
+            json.raw("    \"category\": ").string(expense.getCategory()).raw(",\n");
+            json.raw("    \"amount\": ").money(expense.getAmountCents()).raw(",\n");
+            json.raw("    \"date\": ").string(expense.getDate()).raw(",\n");
+            json.raw("    \"description\": ").string(expense.getDescription()).raw("\n");
+            json.raw("  }");
         }
-        json.append("\n]");
-        return json.toString();
+        json.raw("\n]");
     }
-    
-    public static String buildCategoriesJson(java.util.Set<String> categories) {
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
+
+    public static void writeCategories(JsonWriter json, Collection<String> categories) throws IOException {
+        json.raw("[\n");
         boolean first = true;
         for (String category : categories) {
-            if (!first) json.append(",\n");
-            json.append("  \"").append(escapeJson(category)).append("\"");
+            if (!first) json.raw(",\n");
+            json.raw("  ").string(category);
             first = false;
         }
-        json.append("\n]");
-        return json.toString();
+        json.raw("\n]");
+    }
+
+    public static String buildStatsJson(ExpenseCalculator stats) {
+        return JsonWriter.toString(json -> writeStats(json, stats));
+    }
+
+    public static String buildExpensesJson(List<Expense> expenses) {
+        return JsonWriter.toString(json -> writeExpenses(json, expenses));
     }
-}
 
+    public static String buildCategoriesJson(Collection<String> categories) {
+        return JsonWriter.toString(json -> writeCategories(json, categories));
+    }
+}
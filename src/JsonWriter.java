@@ -0,0 +1,217 @@
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Streaming UTF-8 JSON output. Strings are escaped and encoded in one pass
+// straight into a pooled byte buffer, which is written out whenever it fills.
+//
+// For HTTP responses nothing is sent until the buffer first fills: a response
+// that fits is sent with its exact Content-Length, a larger one switches to
+// chunked transfer and streams the rest.
+public class JsonWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(64);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpExchange exchange;
+    private final int statusCode;
+    private OutputStream out;
+    private byte[] buffer;
+    private int position;
+
+    public JsonWriter(OutputStream out) {
+        this(null, 0, out);
+    }
+
+    private JsonWriter(HttpExchange exchange, int statusCode, OutputStream out) {
+        this.exchange = exchange;
+        this.statusCode = statusCode;
+        this.out = out;
+        byte[] pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    // Closing the writer completes the response and closes the exchange
+    public static JsonWriter forResponse(HttpExchange exchange, int statusCode) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        return new JsonWriter(exchange, statusCode, null);
+    }
+
+    // Punctuation, keys and other text known to be plain ASCII
+    public JsonWriter raw(String ascii) throws IOException {
+        int length = ascii.length();
+        if (length > buffer.length) {
+            for (int i = 0; i < length; i += buffer.length) {
+                raw(ascii.substring(i, Math.min(length, i + buffer.length)));
+            }
+            return this;
+        }
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position + i] = (byte) ascii.charAt(i);
+        }
+        position += length;
+        return this;
+    }
+
+    // A quoted string; null is written as ""
+    public JsonWriter string(String value) throws IOException {
+        int length = value != null ? value.length() : 0;
+        // One bounds check for the whole string when it is sure to fit (a char
+        // takes at most 6 bytes), otherwise one per char
+        boolean checked = length <= (buffer.length - 2) / 6;
+        ensure(checked ? length * 6 + 2 : 1);
+        buffer[position++] = '"';
+        for (int i = 0; i < length; i++) {
+            if (!checked) {
+                ensure(6);
+            }
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    buffer[position++] = '\\';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x20) {
+                escapeControl(c);
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        return this;
+    }
+
+    private void escapeControl(char c) {
+        buffer[position++] = '\\';
+        switch (c) {
+            case '\n' -> buffer[position++] = 'n';
+            case '\r' -> buffer[position++] = 'r';
+            case '\t' -> buffer[position++] = 't';
+            default -> {
+                buffer[position++] = 'u';
+                buffer[position++] = '0';
+                buffer[position++] = '0';
+                buffer[position++] = HEX[c >> 4];
+                buffer[position++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    public JsonWriter number(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return raw(Long.toString(value));
+            }
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digits(value);
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+        return this;
+    }
+
+    // An amount in cents as an exact decimal with two places, e.g. -12.50
+    public JsonWriter money(long cents) throws IOException {
+        if (cents < 0) {
+            ensure(1);
+            buffer[position++] = '-';
+            cents = -cents;
+        }
+        number(cents / 100);
+        long fraction = cents % 100;
+        ensure(3);
+        buffer[position++] = '.';
+        buffer[position++] = (byte) ('0' + fraction / 10);
+        buffer[position++] = (byte) ('0' + fraction % 10);
+        return this;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (out == null) {
+            // The response is larger than one buffer: stream it chunked
+            exchange.sendResponseHeaders(statusCode, 0);
+            out = exchange.getResponseBody();
+        }
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            if (out == null) {
+                exchange.sendResponseHeaders(statusCode, position == 0 ? -1 : position);
+                out = exchange.getResponseBody();
+            }
+            out.write(buffer, 0, position);
+            if (exchange != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } finally {
+            POOL.offer(buffer);
+            buffer = null;
+            if (exchange != null) {
+                exchange.close();
+            }
+        }
+    }
+
+    // Renders to a String, for callers that need the whole document at once
+    public static String toString(JsonContent content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter json = new JsonWriter(bytes)) {
+            content.writeTo(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public interface JsonContent {
+        void writeTo(JsonWriter json) throws IOException;
+    }
+}
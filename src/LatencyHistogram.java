@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// The legacy server's copy of the Spring app's latency recorder: HdrHistogram
+// style log-linear buckets (64 per power of two, quantiles within 1/64) of
+// atomic counters, so recording takes no lock and allocates nothing, plus a
+// one-minute rate ticked lazily every five seconds.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // About 18 minutes; longer values are counted at this cap
+    private static final long MAX_NANOS = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_NANOS) + 1;
+
+    private static final long TICK_NANOS = 5_000_000_000L;
+    private static final double ALPHA = 1 - Math.exp(-5.0 / 60);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    private final LongAdder uncounted = new LongAdder();
+    private final AtomicLong lastTick = new AtomicLong(System.nanoTime());
+    private volatile double ratePerSecond = Double.NaN;
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_NANOS));
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sumNanos.add(value);
+        tickIfNeeded();
+        uncounted.increment();
+    }
+
+    // Values below 2 * SUB_BUCKETS get a bucket each; above that, each power of
+    // two is split into SUB_BUCKETS equal parts
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // Largest value that falls into the bucket
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index - (long) shift * SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    // Values at the given quantiles (0..1), in nanoseconds; zero when empty.
+    // Taken in one pass over the buckets, which keep counting meanwhile.
+    public long[] quantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] values = new long[quantiles.length];
+        for (int q = 0; q < quantiles.length; q++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS && total > 0; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    values[q] = highestValue(i);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    // Recordings per second, weighted over about the last minute
+    public double ratePerSecond() {
+        tickIfNeeded();
+        double rate = ratePerSecond;
+        return Double.isNaN(rate) ? 0 : rate;
+    }
+
+    private void tickIfNeeded() {
+        long last = lastTick.get();
+        long age = System.nanoTime() - last;
+        if (age < TICK_NANOS) {
+            return;
+        }
+        // Only the thread that moves the tick folds the elapsed intervals in
+        if (lastTick.compareAndSet(last, last + age - age % TICK_NANOS)) {
+            long ticks = age / TICK_NANOS;
+            // Recordings since the last tick are spread evenly over the missed intervals
+            double instant = uncounted.sumThenReset() / (ticks * TICK_NANOS / 1e9);
+            double rate = ratePerSecond;
+            for (long i = 0; i < Math.min(ticks, 1000); i++) {
+                rate = Double.isNaN(rate) ? instant : rate + ALPHA * (instant - rate);
+            }
+            ratePerSecond = rate;
+        }
+    }
+}
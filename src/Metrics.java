@@ -0,0 +1,157 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// The legacy server's /metrics registry, matching the Spring app's GET /api/metrics:
+// Prometheus text with a summary x_seconds (p50, p99, p999) and a gauge
+// x_ops_per_second per timer "x". Timers and counters update without locks;
+// gauges are sampled when scraped.
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    // Adds the current value of each labelled series at scrape time
+    public interface Gauge {
+        void sample(Samples samples);
+    }
+
+    public interface Samples {
+        void add(String labels, double value);
+    }
+
+    private static final class Family {
+        final String type;
+        final String help;
+        // Label text -> LatencyHistogram or LongAdder
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+        final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Metrics() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm_heap_used_bytes", "Heap in use, including garbage not yet collected",
+                samples -> samples.add("", memory.getHeapMemoryUsage().getUsed()));
+        gauge("jvm_heap_max_bytes", "Largest heap the JVM may grow to",
+                samples -> samples.add("", memory.getHeapMemoryUsage().getMax()));
+    }
+
+    // Label text for a series, e.g. labels("op", "add") gives op="add"
+    public static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(namesAndValues[i]).append("=\"");
+            String value = namesAndValues[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') {
+                    labels.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    labels.append("\\n");
+                } else {
+                    labels.append(ch);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.toString();
+    }
+
+    public LatencyHistogram timer(String name, String help, String labels) {
+        return (LatencyHistogram) family(name, "summary", help).series
+                .computeIfAbsent(labels, key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name, String help, String labels) {
+        return (LongAdder) family(name, "counter", help).series.computeIfAbsent(labels, key -> new LongAdder());
+    }
+
+    public void gauge(String name, String help, Gauge gauge) {
+        family(name, "gauge", help).gauges.add(gauge);
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+        }
+        return family;
+    }
+
+    // Text exposition format 0.0.4, families and series in name order
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        families.forEach((name, family) -> {
+            switch (family.type) {
+                case "summary" -> writeTimers(out, name, family);
+                case "counter" -> {
+                    header(out, name, family.type, family.help);
+                    new TreeMap<>(family.series).forEach((labels, counter) ->
+                            sample(out, name, labels, ((LongAdder) counter).sum()));
+                }
+                default -> {
+                    header(out, name, family.type, family.help);
+                    Map<String, Double> values = new TreeMap<>();
+                    family.gauges.forEach(gauge -> gauge.sample(values::put));
+                    values.forEach((labels, value) -> sample(out, name, labels, value));
+                }
+            }
+        });
+        return out.toString();
+    }
+
+    private static void writeTimers(StringBuilder out, String name, Family family) {
+        Map<String, Object> series = new TreeMap<>(family.series);
+        String seconds = name + "_seconds";
+        header(out, seconds, "summary", family.help);
+        series.forEach((labels, value) -> {
+            LatencyHistogram histogram = (LatencyHistogram) value;
+            long[] quantiles = histogram.quantiles(QUANTILES);
+            boolean empty = histogram.count() == 0;
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            for (int i = 0; i < QUANTILES.length; i++) {
+                // Prometheus convention: an empty summary has no quantile values
+                sample(out, seconds, prefix + "quantile=\"" + QUANTILES[i] + "\"",
+                        empty ? Double.NaN : quantiles[i] / 1e9);
+            }
+            sample(out, seconds + "_sum", labels, histogram.sumNanos() / 1e9);
+            sample(out, seconds + "_count", labels, histogram.count());
+        });
+        String rate = name + "_ops_per_second";
+        header(out, rate, "gauge", "Rate of " + name + " over about the last minute");
+        series.forEach((labels, value) -> sample(out, rate, labels, ((LatencyHistogram) value).ratePerSecond()));
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,55 @@
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+
+// Legacy server amounts as whole cents in a long, so totals add up exactly
+// instead of drifting like doubles. -Dexpense.currency=USD (the default) picks
+// the currency amounts are parsed and formatted in; it may have at most two
+// decimal places.
+public class Money {
+    static final Currency CURRENCY = Currency.getInstance(System.getProperty("expense.currency", "USD"));
+    // Ten billion units, so sums of millions of rows stay far from overflow
+    static final long MAX_CENTS = 1_000_000_000_000L;
+
+    static {
+        if (CURRENCY.getDefaultFractionDigits() < 0 || CURRENCY.getDefaultFractionDigits() > 2) {
+            throw new IllegalArgumentException("Unsupported currency: " + CURRENCY.getCurrencyCode());
+        }
+    }
+
+    // "12.5", "USD 12.50" or "$1,234.50"; no more decimals than the currency has
+    public static long parse(String text) {
+        String rest = text.trim();
+        boolean negative = rest.startsWith("-");
+        if (negative) {
+            rest = rest.substring(1).trim();
+        }
+        for (String prefix : new String[] {CURRENCY.getCurrencyCode(), CURRENCY.getSymbol(Locale.US)}) {
+            if (rest.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                rest = rest.substring(prefix.length()).trim();
+                break;
+            }
+        }
+        BigDecimal amount = new BigDecimal(rest.replace(",", ""));
+        if (amount.stripTrailingZeros().scale() > CURRENCY.getDefaultFractionDigits()
+                || amount.compareTo(BigDecimal.valueOf(MAX_CENTS, 2)) > 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        long cents = amount.movePointRight(2).longValueExact();
+        return negative ? -cents : cents;
+    }
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // e.g. "$1,234.50"
+    public static String format(long cents) {
+        NumberFormat format = NumberFormat.getCurrencyInstance(Locale.US);
+        format.setCurrency(CURRENCY);
+        format.setMinimumFractionDigits(CURRENCY.getDefaultFractionDigits());
+        format.setMaximumFractionDigits(CURRENCY.getDefaultFractionDigits());
+        return format.format(toDecimal(cents));
+    }
+}
@@ -0,0 +1,218 @@
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+// The UI files in one directory, held in memory with a gzip copy and a strong
+// ETag (a content hash) computed once per version of the file. A request costs
+// a map lookup and a write of bytes that are never modified; the disk is only
+// looked at again, to reload a changed file or pick up a new one, at most once
+// per CHECK_INTERVAL_MILLIS.
+//
+// Unknown paths get index.html, as the single-page UI handles its own routes.
+public class StaticAssets {
+
+    static final long CHECK_INTERVAL_MILLIS = 1000;
+    static final String INDEX = "index.html";
+
+    static class Asset {
+        final File file;
+        final long lastModified;
+        final long length;
+        final String contentType;
+        final byte[] bytes;
+        // Null when compressing would not make it smaller
+        final byte[] gzip;
+        final String etag;
+        volatile long checkedAt;
+
+        Asset(File file) throws IOException {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.contentType = contentType(file.getName());
+            this.bytes = Files.readAllBytes(file.toPath());
+            byte[] compressed = compressible(contentType) ? compress(bytes) : null;
+            this.gzip = compressed != null && compressed.length < bytes.length ? compressed : null;
+            this.etag = hash(bytes);
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        boolean changed() {
+            return file.lastModified() != lastModified || file.length() != length;
+        }
+    }
+
+    private final File root;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private volatile long scannedAt;
+
+    public StaticAssets(File root) {
+        this.root = root;
+        scan();
+    }
+
+    // Loads files not seen before
+    private void scan() {
+        scannedAt = System.currentTimeMillis();
+        File[] files = root.listFiles(File::isFile);
+        if (files != null) {
+            for (File file : files) {
+                if (!assets.containsKey(file.getName())) {
+                    load(file.getName());
+                }
+            }
+        }
+    }
+
+    void serve(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        String name = exchange.getRequestURI().getPath().substring(1);
+        Asset asset = name.isEmpty() || name.contains("/") ? null : get(name);
+        if (asset == null) {
+            asset = get(INDEX);
+        }
+        if (asset == null) {
+            byte[] error = "404 - Not Found".getBytes();
+            exchange.sendResponseHeaders(404, error.length);
+            exchange.getResponseBody().write(error);
+            exchange.close();
+            return;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = asset.gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        // Each encoding is a different representation, so it gets its own strong tag
+        String etag = "\"" + asset.etag + (gzip ? "-gz" : "") + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        // HTML is revalidated on every load so a new UI shows up at once; the 304 is cheap
+        exchange.getResponseHeaders().set("Cache-Control",
+                asset.contentType.startsWith("text/html") ? "no-cache" : "public, max-age=3600");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = gzip ? asset.gzip : asset.bytes;
+        exchange.getResponseHeaders().set("Content-Type", asset.contentType);
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+
+    // The cached asset, reloaded first if the file changed since it was last checked
+    Asset get(String name) {
+        Asset asset = assets.get(name);
+        if (asset == null) {
+            if (System.currentTimeMillis() - scannedAt < CHECK_INTERVAL_MILLIS) {
+                return null;
+            }
+            scan();
+            return assets.get(name);
+        }
+        if (System.currentTimeMillis() - asset.checkedAt < CHECK_INTERVAL_MILLIS) {
+            return asset;
+        }
+        asset.checkedAt = System.currentTimeMillis();
+        return asset.changed() ? load(name) : asset;
+    }
+
+    private Asset load(String name) {
+        File file = new File(root, name);
+        try {
+            if (!file.isFile()) {
+                assets.remove(name);
+                return null;
+            }
+            Asset asset = new Asset(file);
+            assets.put(name, asset);
+            return asset;
+        } catch (IOException e) {
+            System.out.println("Could not load " + file + ": " + e.getMessage());
+            assets.remove(name);
+            return null;
+        }
+    }
+
+    static String contentType(String name) {
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "html":
+                return "text/html; charset=utf-8";
+            case "css":
+                return "text/css; charset=utf-8";
+            case "js":
+                return "text/javascript; charset=utf-8";
+            case "json":
+                return "application/json; charset=utf-8";
+            case "svg":
+                return "image/svg+xml";
+            case "png":
+                return "image/png";
+            case "ico":
+                return "image/x-icon";
+            case "txt":
+                return "text/plain; charset=utf-8";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("image/svg");
+    }
+
+    static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (GZIPOutputStream zip = new GZIPOutputStream(out, 8192)) {
+            zip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // First 16 bytes of the SHA-256, URL-safe base64
+    static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,278 @@
+package com.expensetracker.config;
+
+import com.expensetracker.model.AlertRule;
+import com.expensetracker.model.Money;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+
+// Settings under the "expense." prefix in application.properties
+@ConfigurationProperties(prefix = "expense")
+public class ExpenseProperties {
+    private String seedFile = "data/expenses.csv";
+    // Server-side files for POST /api/expenses/import?path= must live here
+    private String importDir = "data/import";
+    // CSV bodies sent to POST /api/expenses/import larger than this are refused
+    private DataSize importMaxSize = DataSize.ofMegabytes(256);
+    // Amounts are parsed and formatted in this currency, stored as cents
+    private Currency currency = Currency.getInstance("USD");
+    // Formatting locale for display strings such as "formattedTotal"
+    private Locale locale = Locale.US;
+    private final Store store = new Store();
+    private final Wal wal = new Wal();
+    private final Snapshot snapshot = new Snapshot();
+    private final Cache cache = new Cache();
+    private final Stream stream = new Stream();
+    private final Tenants tenants = new Tenants();
+    private final Alerts alerts = new Alerts();
+
+    public String getSeedFile() {
+        return seedFile;
+    }
+
+    public void setSeedFile(String seedFile) {
+        this.seedFile = seedFile;
+    }
+
+    public String getImportDir() {
+        return importDir;
+    }
+
+    public void setImportDir(String importDir) {
+        this.importDir = importDir;
+    }
+
+    public DataSize getImportMaxSize() {
+        return importMaxSize;
+    }
+
+    public void setImportMaxSize(DataSize importMaxSize) {
+        this.importMaxSize = importMaxSize;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = Money.checkCurrency(currency);
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public void setLocale(Locale locale) {
+        this.locale = locale;
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    public Wal getWal() {
+        return wal;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Stream getStream() {
+        return stream;
+    }
+
+    public Tenants getTenants() {
+        return tenants;
+    }
+
+    public Alerts getAlerts() {
+        return alerts;
+    }
+
+    public static class Store {
+        public enum Type {
+            // Hash map plus skip list of Expense objects
+            CONCURRENT,
+            // Primitive column arrays
+            COLUMNAR,
+            // Fixed-width records and descriptions in direct buffers outside the heap
+            OFF_HEAP
+        }
+
+        private Type type = Type.CONCURRENT;
+
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+    }
+
+    public static class Wal {
+        private boolean enabled = true;
+        private String dir = "data/wal";
+        // When true a write returns only after its log record is fsynced (group commit);
+        // when false records are fsynced in the background shortly afterwards
+        private boolean syncWrites = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public boolean isSyncWrites() {
+            return syncWrites;
+        }
+
+        public void setSyncWrites(boolean syncWrites) {
+            this.syncWrites = syncWrites;
+        }
+    }
+
+    public static class Snapshot {
+        private Duration interval = Duration.ofMinutes(5);
+        // Skip a scheduled snapshot until at least this many records have been logged
+        private long minRecords = 1;
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public long getMinRecords() {
+            return minRecords;
+        }
+
+        public void setMinRecords(long minRecords) {
+            this.minRecords = minRecords;
+        }
+    }
+
+    public static class Cache {
+        // Rendered responses larger than this are served but not kept
+        private DataSize maxBodySize = DataSize.ofMegabytes(64);
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    public static class Stream {
+        // Changes within one window are pushed as a single event
+        private Duration window = Duration.ofMillis(250);
+        private Duration heartbeat = Duration.ofSeconds(15);
+        // Threads writing events to subscribers; a slow subscriber holds at most one
+        private int senderThreads = 8;
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getHeartbeat() {
+            return heartbeat;
+        }
+
+        public void setHeartbeat(Duration heartbeat) {
+            this.heartbeat = heartbeat;
+        }
+
+        public int getSenderThreads() {
+            return senderThreads;
+        }
+
+        public void setSenderThreads(int senderThreads) {
+            this.senderThreads = senderThreads;
+        }
+    }
+
+    public static class Tenants {
+        // Each tenant other than "default" logs under <dir>/<tenant>
+        private String dir = "data/tenants";
+        private int maxTenants = 1000;
+        // Writes that add data are refused once a tenant's rows take this much
+        // heap (estimated); zero means no limit
+        private DataSize maxMemory = DataSize.ofBytes(0);
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public int getMaxTenants() {
+            return maxTenants;
+        }
+
+        public void setMaxTenants(int maxTenants) {
+            this.maxTenants = maxTenants;
+        }
+
+        public DataSize getMaxMemory() {
+            return maxMemory;
+        }
+
+        public void setMaxMemory(DataSize maxMemory) {
+            this.maxMemory = maxMemory;
+        }
+    }
+
+    public static class Alerts {
+        // Alerts kept for GET /api/alerts per tenant; older ones are dropped
+        private int retained = 1000;
+        // Rules every tenant starts with, e.g. expense.alerts.rules[0].category=Food,
+        // .window=month, .threshold=500; more can be added through /api/alerts/rules
+        private List<AlertRule> rules = new ArrayList<>();
+
+        public int getRetained() {
+            return retained;
+        }
+
+        public void setRetained(int retained) {
+            this.retained = retained;
+        }
+
+        public List<AlertRule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<AlertRule> rules) {
+            this.rules = rules;
+        }
+    }
+}
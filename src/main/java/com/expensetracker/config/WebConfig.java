@@ -0,0 +1,21 @@
+package com.expensetracker.config;
+
+import com.expensetracker.controller.MetricsInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Spring MVC hooks: every API handler is timed for GET /api/metrics
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    private final MetricsInterceptor metricsInterceptor;
+
+    public WebConfig(MetricsInterceptor metricsInterceptor) {
+        this.metricsInterceptor = metricsInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(metricsInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,243 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.service.ChangeSet;
+import com.expensetracker.service.ExpenseService;
+import com.expensetracker.service.TenantRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Pushes ExpenseService changes to GET /api/stream subscribers as server-sent
+// events. Each tenant's changes are drained once per window and serialized once
+// for all of that tenant's subscribers.
+// A subscriber still writing an earlier event gets later ones merged into a
+// single pending event instead of queued, so a slow client holds bounded memory
+// and one sender thread, and never delays the others.
+//
+// Events: "hello" {version} on connect, "delta" with a ChangeSet, and "reset"
+// when too many rows changed to list (reload everything).
+@Component
+public class ChangeBroadcaster {
+
+    private final TenantRegistry tenants;
+    private final ObjectMapper objectMapper;
+    private final long heartbeatMillis;
+    private final Map<ExpenseService, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+    private long lastHeartbeat = System.currentTimeMillis();
+
+    public ChangeBroadcaster(TenantRegistry tenants, ObjectMapper objectMapper,
+                             ExpenseProperties properties) {
+        this.tenants = tenants;
+        this.objectMapper = objectMapper;
+        ExpenseProperties.Stream stream = properties.getStream();
+        this.heartbeatMillis = stream.getHeartbeat().toMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(daemon("change-stream"));
+        this.senders = Executors.newFixedThreadPool(stream.getSenderThreads(), daemon("change-stream-send"));
+        long windowMillis = stream.getWindow().toMillis();
+        ticker.scheduleWithFixedDelay(this::tick, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public SseEmitter subscribe(ExpenseService expenseService) throws IOException {
+        // No timeout: dead connections are found by the heartbeat
+        SseEmitter emitter = new SseEmitter(0L);
+        Set<Subscriber> tenantSubscribers = subscribers.computeIfAbsent(expenseService,
+                key -> ConcurrentHashMap.newKeySet());
+        Subscriber subscriber = new Subscriber(emitter, tenantSubscribers);
+        emitter.onCompletion(subscriber::remove);
+        emitter.onTimeout(subscriber::remove);
+        emitter.onError(error -> subscriber.remove());
+        // Buffered by the emitter until the response starts, so it always goes first
+        long version = expenseService.getVersion();
+        emitter.send(SseEmitter.event().name("hello").id(Long.toString(version))
+                .data(toJson(Map.of("version", version)), MediaType.APPLICATION_JSON));
+        tenantSubscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            boolean heartbeat = now - lastHeartbeat >= heartbeatMillis;
+            for (ExpenseService tenant : tenants.getTenants()) {
+                // Drained even with nobody listening so a new subscriber starts clean
+                ChangeSet changes = tenant.drainChanges();
+                Set<Subscriber> tenantSubscribers = subscribers.get(tenant);
+                if (tenantSubscribers == null) {
+                    continue;
+                }
+                if (changes != null) {
+                    Event event = new Event(changes.reset() ? "reset" : "delta", changes.version(),
+                            toJson(changes), changes);
+                    for (Subscriber subscriber : tenantSubscribers) {
+                        subscriber.offer(event, now);
+                    }
+                }
+                for (Subscriber subscriber : tenantSubscribers) {
+                    // A subscriber that cannot take one event in two heartbeats is stuck; drop it
+                    if (subscriber.stalledSince(now - 2 * heartbeatMillis)) {
+                        subscriber.remove();
+                        subscriber.emitter.complete();
+                    } else if (heartbeat) {
+                        subscriber.heartbeat(now);
+                    }
+                }
+            }
+            if (heartbeat) {
+                lastHeartbeat = now;
+            }
+        } catch (Exception e) {
+            System.out.println("Change stream tick failed: " + e.getMessage());
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        for (Set<Subscriber> tenantSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : tenantSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+    }
+
+    // json is pre-rendered when shared by all subscribers; changes is kept so
+    // pending deltas can be merged. A null name means a heartbeat comment.
+    private record Event(String name, long version, String json, ChangeSet changes) {}
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        private final Set<Subscriber> tenantSubscribers;
+        private final ReentrantLock lock = new ReentrantLock();
+        // Guarded by lock
+        private Event pending;
+        private boolean sending;
+        private long sendingSince;
+
+        Subscriber(SseEmitter emitter, Set<Subscriber> tenantSubscribers) {
+            this.emitter = emitter;
+            this.tenantSubscribers = tenantSubscribers;
+        }
+
+        void remove() {
+            tenantSubscribers.remove(this);
+        }
+
+        void offer(Event event, long now) {
+            lock.lock();
+            try {
+                if (pending == null || pending.changes() == null) {
+                    pending = event;
+                } else {
+                    ChangeSet merged = pending.changes().mergedWith(event.changes());
+                    pending = new Event(merged.reset() ? "reset" : "delta", merged.version(), null, merged);
+                }
+                if (sending) {
+                    return;
+                }
+                sending = true;
+                sendingSince = now;
+            } finally {
+                lock.unlock();
+            }
+            senders.execute(this::drain);
+        }
+
+        boolean stalledSince(long cutoff) {
+            lock.lock();
+            try {
+                return sending && sendingSince < cutoff;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Nothing to do if an event is pending or being written anyway
+        void heartbeat(long now) {
+            lock.lock();
+            try {
+                if (sending) {
+                    return;
+                }
+                pending = new Event(null, 0, null, null);
+                sending = true;
+                sendingSince = now;
+            } finally {
+                lock.unlock();
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Event event;
+                lock.lock();
+                try {
+                    event = pending;
+                    pending = null;
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                    sendingSince = System.currentTimeMillis();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    if (event.name() == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        String json = event.json() != null ? event.json() : toJson(event.changes());
+                        emitter.send(SseEmitter.event().name(event.name()).id(Long.toString(event.version()))
+                                .data(json, MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the emitter callbacks may not fire for a broken pipe
+                    remove();
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
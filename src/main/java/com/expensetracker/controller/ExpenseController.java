@@ -1,32 +1,98 @@
 package com.expensetracker.controller;
 
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.metrics.Metrics;
+import com.expensetracker.model.AlertRule;
+import com.expensetracker.model.BatchOperation;
+import com.expensetracker.model.BatchResult;
 import com.expensetracker.model.Expense;
+import com.expensetracker.model.Money;
+import com.expensetracker.model.QuerySpec;
+import com.expensetracker.service.AlertEngine;
+import com.expensetracker.service.CsvBulkImporter;
 import com.expensetracker.service.ExpenseService;
+import com.expensetracker.service.QueryEngine;
+import com.expensetracker.service.QuotaExceededException;
+import com.expensetracker.service.RollupIndex;
+import com.expensetracker.service.TenantRegistry;
+import com.expensetracker.store.DateKey;
+import com.expensetracker.store.SearchIndex;
+import com.expensetracker.wire.ExpenseFrameWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Next-Cursor", "ETag"})
 public class ExpenseController {
 
+    // Selects the tenant partition; requests without it use the default tenant
+    static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 50_000;
+    // Longer unpaged expense lists are streamed per request instead of cached
+    static final int MAX_CACHED_ROWS = 100_000;
+
+    @Autowired
+    private TenantRegistry tenants;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ChangeBroadcaster changeBroadcaster;
+
     @Autowired
-    private ExpenseService expenseService;
+    private Metrics metrics;
+
+    @Autowired
+    private ExpenseProperties properties;
 
     // CREATE - Add a new expense
     @PostMapping("/expenses")
-    public ResponseEntity<Map<String, Object>> addExpense(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<Map<String, Object>> addExpense(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                          @RequestBody Map<String, Object> request) {
+        ExpenseService expenseService = tenants.get(tenant);
+        if (!hasCategory(request)) {
+            return missingCategory();
+        }
         try {
             Expense expense = new Expense();
             expense.setCategory((String) request.get("category"));
-            expense.setAmount(Double.parseDouble(request.get("amount").toString()));
+            expense.setAmountCents(Money.parse(request.get("amount"), expenseService.getCurrency()));
             
             String dateStr = (String) request.get("date");
             if (dateStr != null && !dateStr.isEmpty()) {
@@ -44,6 +110,8 @@ public class ExpenseController {
             response.put("message", "Expense added successfully");
             response.put("expense", saved);
             return ResponseEntity.ok(response);
+        } catch (QuotaExceededException e) {
+            return quotaExceeded(e);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -53,15 +121,330 @@ public class ExpenseController {
         }
     }
 
-    // READ - Get all expenses (sorted by date, most recent first)
+    // BATCH - Apply a list of add/update/delete operations together. Nothing is applied
+    // if any operation is invalid; ids that do not exist are reported per item.
+    @PostMapping("/expenses/batch")
+    public ResponseEntity<Map<String, Object>> applyBatch(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                          @RequestBody List<BatchOperation> operations) {
+        ExpenseService expenseService = tenants.get(tenant);
+        Map<String, Object> response = new HashMap<>();
+        if (operations.size() > MAX_BATCH_SIZE) {
+            response.put("success", false);
+            response.put("message", "Batch too large, at most " + MAX_BATCH_SIZE + " operations");
+            return ResponseEntity.badRequest().body(response);
+        }
+        try {
+            List<BatchResult> results = expenseService.applyBatch(operations);
+            boolean applied = results.stream().noneMatch(BatchResult::isInvalid);
+            response.put("success", applied);
+            response.put("results", results);
+            return applied ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
+        } catch (QuotaExceededException e) {
+            return quotaExceeded(e);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error applying batch: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // BULK IMPORT - CSV (Category,Amount,Date,Description) sent as the request body
+    @PostMapping(value = "/expenses/import", consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public ResponseEntity<Map<String, Object>> importExpenses(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                              HttpServletRequest request) {
+        ExpenseService expenseService = tenants.get(tenant);
+        long maxSize = properties.getImportMaxSize().toBytes();
+        if (request.getContentLengthLong() > maxSize) {
+            return uploadTooLarge(maxSize);
+        }
+        Path upload = null;
+        try {
+            upload = Files.createTempFile("expense-import-", ".csv");
+            if (!copyAtMost(request.getInputStream(), upload, maxSize)) {
+                return uploadTooLarge(maxSize);
+            }
+            return importResponse(expenseService.importCsv(upload));
+        } catch (Exception e) {
+            return importFailed(e);
+        } finally {
+            if (upload != null) {
+                try {
+                    Files.deleteIfExists(upload);
+                } catch (IOException ignored) {
+                    // Temp directory cleanup will get it
+                }
+            }
+        }
+    }
+
+    // BULK IMPORT - CSV file already on the server, relative to expense.import-dir
+    @PostMapping(value = "/expenses/import", params = "path")
+    public ResponseEntity<Map<String, Object>> importExpenses(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                              @RequestParam String path) {
+        ExpenseService expenseService = tenants.get(tenant);
+        try {
+            return importResponse(expenseService.importCsv(expenseService.resolveImportFile(path)));
+        } catch (Exception e) {
+            return importFailed(e);
+        }
+    }
+
+    // Chunked bodies carry no length up front, so the limit is also enforced while copying
+    private static boolean copyAtMost(InputStream in, Path target, long maxSize) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                copied += read;
+                if (copied > maxSize) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private static ResponseEntity<Map<String, Object>> uploadTooLarge(long maxSize) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Import body is larger than " + maxSize + " bytes; "
+                + "put the file in the import directory and use ?path= instead");
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+    }
+
+    // An import stopped by the tenant memory limit is not rolled back: it gets a
+    // 507 that still counts the rows imported before it stopped
+    private static ResponseEntity<Map<String, Object>> importResponse(CsvBulkImporter.Result result) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", result.stopped() == null);
+        response.put("imported", result.imported());
+        response.put("rejected", result.rejected());
+        response.put("errors", result.errors());
+        response.put("elapsedMillis", result.elapsedMillis());
+        if (result.stopped() != null) {
+            response.put("message", result.stopped());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> importFailed(Exception e) {
+        if (e instanceof QuotaExceededException quota) {
+            return quotaExceeded(quota);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Error importing expenses: " + e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    // READ - Get all expenses (sorted by date, most recent first).
+    // ?after=<date>,<id>&limit=N returns one page and sets X-Next-Cursor when more may follow.
     @GetMapping("/expenses")
-    public ResponseEntity<List<Expense>> getAllExpenses() {
-        return ResponseEntity.ok(expenseService.getAllExpenses());
+    public ResponseEntity<?> getAllExpenses(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit,
+                                            ServletWebRequest request) throws IOException {
+        ExpenseService expenseService = tenants.get(tenant);
+        DateKey cursor;
+        try {
+            cursor = parseCursor(after);
+        } catch (RuntimeException e) {
+            return invalidCursor(e);
+        }
+        if (cursor == null && limit == null) {
+            if (expenseService.getExpenseCount() > MAX_CACHED_ROWS) {
+                return streamedList(expenseService, request);
+            }
+            return cached(expenseService, "expenses", request, () -> expenseService.streamExpenses(null));
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Expense> page = expenseService.getExpensesPage(cursor, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, DateKey.of(page.get(page.size() - 1)).toCursor());
+        }
+        return response.body(page);
+    }
+
+    // READ - Stream expenses as newline-delimited JSON (Accept: application/x-ndjson),
+    // writing rows straight to the response instead of building the full list first
+    @GetMapping(value = "/expenses", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamExpenses(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                                 @RequestParam(required = false) String after) {
+        ExpenseService expenseService = tenants.get(tenant);
+        DateKey cursor;
+        try {
+            cursor = parseCursor(after);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Iterable<Expense> rows = expenseService.streamExpenses(cursor);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(streamExpenses(rows));
+    }
+
+    // READ - Stream expenses as columnar binary frames (Accept: application/x-expense-frames),
+    // a fraction of the JSON size with no text parsing for clients; see ExpenseFrameWriter
+    @GetMapping(value = "/expenses", produces = ExpenseFrameWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamExpenseFrames(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                                     @RequestParam(required = false) String after) {
+        ExpenseService expenseService = tenants.get(tenant);
+        DateKey cursor;
+        try {
+            cursor = parseCursor(after);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Iterable<Expense> rows = expenseService.streamExpenses(cursor);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ExpenseFrameWriter.MEDIA_TYPE))
+                .body(out -> {
+                    ExpenseFrameWriter frames = new ExpenseFrameWriter(out, expenseService.getCurrency());
+                    for (Expense expense : rows) {
+                        frames.write(expense);
+                    }
+                    frames.finish();
+                });
+    }
+
+    // Checked before the service sees the row, as the legacy /add does: the
+    // stores and indexes key on the category and cannot take a row without one
+    private static boolean hasCategory(Map<String, Object> request) {
+        return request.get("category") instanceof String category && !category.isBlank();
+    }
+
+    private static ResponseEntity<Map<String, Object>> missingCategory() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Category is required");
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> quotaExceeded(QuotaExceededException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(response);
+    }
+
+    @ExceptionHandler(TenantRegistry.InvalidTenantException.class)
+    public ResponseEntity<Map<String, Object>> invalidTenant(TenantRegistry.InvalidTenantException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private static DateKey parseCursor(String after) {
+        return after != null && !after.isEmpty() ? DateKey.parseCursor(after) : null;
+    }
+
+    private static ResponseEntity<Map<String, Object>> invalidCursor(RuntimeException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Invalid cursor: " + e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private StreamingResponseBody streamExpenses(Iterable<Expense> rows) {
+        return out -> {
+            // Let the generator fill its buffer instead of flushing a tiny chunk per row
+            ObjectWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                for (Expense expense : rows) {
+                    writer.writeValue(generator, expense);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+
+    // The unpaged list when it is too long to cache: written row by row from the
+    // live view straight to the response, under the ETag of the version read
+    // first. A write during the stream moves the version on, so the tag never
+    // matches a later dataset. Returns null once the response is written.
+    private ResponseEntity<?> streamedList(ExpenseService expenseService, ServletWebRequest request) throws IOException {
+        long version = expenseService.getVersion();
+        boolean gzip = acceptsGzip(request);
+        if (request.checkNotModified(responseCache.etag(expenseService.getTenant() + ".expenses", version, gzip))) {
+            responseCache.countNotModified();
+            return null;
+        }
+        HttpServletResponse response = request.getResponse();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING + ", " + TENANT_HEADER);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 65536)
+                : response.getOutputStream();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (Expense expense : expenseService.streamExpenses(null)) {
+                writer.writeValue(generator, expense);
+            }
+            generator.writeEndArray();
+        }
+        return null;
+    }
+
+    // SEARCH - Words in the description (each matching as a prefix) combined with
+    // category, amount and date filters; newest first, paged like GET /expenses
+    @GetMapping("/expenses/search")
+    public ResponseEntity<?> searchExpenses(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                            @RequestParam(required = false) String q,
+                                            @RequestParam(required = false) String category,
+                                            @RequestParam(required = false) String minAmount,
+                                            @RequestParam(required = false) String maxAmount,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit) {
+        ExpenseService expenseService = tenants.get(tenant);
+        SearchIndex.Query query;
+        try {
+            query = new SearchIndex.Query(SearchIndex.tokenize(q),
+                    category != null && !category.isEmpty() ? category : null,
+                    parseAmount(minAmount, expenseService), parseAmount(maxAmount, expenseService),
+                    from != null && !from.isEmpty() ? LocalDate.parse(from) : null,
+                    to != null && !to.isEmpty() ? LocalDate.parse(to) : null,
+                    parseCursor(after));
+        } catch (RuntimeException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Invalid search: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Expense> page = expenseService.search(query, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, DateKey.of(page.get(page.size() - 1)).toCursor());
+        }
+        return response.body(page);
+    }
+
+    private static Long parseAmount(String amount, ExpenseService expenseService) {
+        return amount != null && !amount.isEmpty() ? Money.parse(amount, expenseService.getCurrency()) : null;
     }
 
     // READ - Get expense by ID
     @GetMapping("/expenses/{id}")
-    public ResponseEntity<Expense> getExpenseById(@PathVariable Long id) {
+    public ResponseEntity<Expense> getExpenseById(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                  @PathVariable Long id) {
+        ExpenseService expenseService = tenants.get(tenant);
         Expense expense = expenseService.getExpenseById(id);
         if (expense != null) {
             return ResponseEntity.ok(expense);
@@ -71,11 +454,16 @@ public class ExpenseController {
 
     // UPDATE - Update an expense
     @PutMapping("/expenses/{id}")
-    public ResponseEntity<Map<String, Object>> updateExpense(@PathVariable Long id, @RequestBody Map<String, Object> request) {
+    public ResponseEntity<Map<String, Object>> updateExpense(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                             @PathVariable Long id, @RequestBody Map<String, Object> request) {
+        ExpenseService expenseService = tenants.get(tenant);
+        if (!hasCategory(request)) {
+            return missingCategory();
+        }
         try {
             Expense expense = new Expense();
             expense.setCategory((String) request.get("category"));
-            expense.setAmount(Double.parseDouble(request.get("amount").toString()));
+            expense.setAmountCents(Money.parse(request.get("amount"), expenseService.getCurrency()));
             
             String dateStr = (String) request.get("date");
             if (dateStr != null && !dateStr.isEmpty()) {
@@ -99,6 +487,8 @@ public class ExpenseController {
             response.put("success", false);
             response.put("message", "Expense not found");
             return ResponseEntity.status(404).body(response);
+        } catch (QuotaExceededException e) {
+            return quotaExceeded(e);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -110,7 +500,9 @@ public class ExpenseController {
 
     // DELETE - Delete an expense
     @DeleteMapping("/expenses/{id}")
-    public ResponseEntity<Map<String, Object>> deleteExpense(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> deleteExpense(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                             @PathVariable Long id) {
+        ExpenseService expenseService = tenants.get(tenant);
         boolean deleted = expenseService.deleteExpense(id);
         Map<String, Object> response = new HashMap<>();
         if (deleted) {
@@ -126,19 +518,200 @@ public class ExpenseController {
 
     // Get statistics
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", expenseService.getTotalExpense());
-        stats.put("byCategory", expenseService.getTotalByCategory());
-        stats.put("highest", expenseService.getHighestCategory());
-        stats.put("lowest", expenseService.getLowestCategory());
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<byte[]> getStats(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                           ServletWebRequest request) throws IOException {
+        ExpenseService expenseService = tenants.get(tenant);
+        return cached(expenseService, "stats", request, () -> {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("total", expenseService.getTotalExpense());
+            stats.put("currency", expenseService.getCurrency().getCurrencyCode());
+            stats.put("formattedTotal", expenseService.getFormattedTotal());
+            stats.put("count", expenseService.getExpenseCount());
+            stats.put("byCategory", expenseService.getTotalByCategory());
+            stats.put("highest", expenseService.getHighestCategory());
+            stats.put("lowest", expenseService.getLowestCategory());
+            return stats;
+        });
+    }
+
+    // Get totals per day, month or year, optionally limited to a date range and category
+    @GetMapping("/stats/trend")
+    public ResponseEntity<?> getTrend(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                      @RequestParam(defaultValue = "month") String granularity,
+                                      @RequestParam(required = false) String from,
+                                      @RequestParam(required = false) String to,
+                                      @RequestParam(required = false) String category) {
+        ExpenseService expenseService = tenants.get(tenant);
+        try {
+            RollupIndex.Granularity level = RollupIndex.Granularity.valueOf(granularity.toUpperCase());
+            LocalDate start = from != null && !from.isEmpty() ? LocalDate.parse(from) : null;
+            LocalDate end = to != null && !to.isEmpty() ? LocalDate.parse(to) : null;
+            return ResponseEntity.ok(expenseService.getTrend(level, start, end,
+                    category != null && !category.isEmpty() ? category : null));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Invalid trend query: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Median, p90 and p99 amounts and distinct description words per category, from
+    // sketches kept per category and month; from and to are months (YYYY-MM)
+    @GetMapping("/stats/distribution")
+    public ResponseEntity<?> getDistribution(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                             @RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to,
+                                             @RequestParam(required = false) String category) {
+        ExpenseService expenseService = tenants.get(tenant);
+        try {
+            YearMonth start = from != null && !from.isEmpty() ? YearMonth.parse(from) : null;
+            YearMonth end = to != null && !to.isEmpty() ? YearMonth.parse(to) : null;
+            return ResponseEntity.ok(expenseService.getDistribution(start, end,
+                    category != null && !category.isEmpty() ? category : null));
+        } catch (DateTimeException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Invalid distribution query: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // ALERTS - Alerts fired after ?after=<seq> (omit for the oldest kept), oldest first;
+    // pass "last" back as ?after= to get only newer ones
+    @GetMapping("/alerts")
+    public ResponseEntity<Map<String, Object>> getAlerts(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                         @RequestParam(defaultValue = "0") long after,
+                                                         @RequestParam(required = false) Integer limit) {
+        ExpenseService expenseService = tenants.get(tenant);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<AlertEngine.Alert> alerts = expenseService.getAlerts().after(after, pageSize);
+        Map<String, Object> response = new HashMap<>();
+        response.put("alerts", alerts);
+        response.put("last", alerts.isEmpty() ? after : alerts.get(alerts.size() - 1).seq());
+        return ResponseEntity.ok(response);
+    }
+
+    // ALERTS - Rules with their totals for the window containing today
+    @GetMapping("/alerts/rules")
+    public List<AlertEngine.RuleStatus> getAlertRules(@RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
+        return tenants.get(tenant).getAlertRules();
+    }
+
+    @PostMapping("/alerts/rules")
+    public ResponseEntity<Map<String, Object>> addAlertRule(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                            @RequestBody AlertRule rule) {
+        ExpenseService expenseService = tenants.get(tenant);
+        Map<String, Object> response = new HashMap<>();
+        String error = rule.validate(expenseService.getCurrency());
+        if (error != null) {
+            response.put("success", false);
+            response.put("message", "Invalid rule: " + error);
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("success", true);
+        response.put("rule", expenseService.addAlertRule(rule));
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/alerts/rules/{id}")
+    public ResponseEntity<Map<String, Object>> deleteAlertRule(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                               @PathVariable long id) {
+        Map<String, Object> response = new HashMap<>();
+        if (tenants.get(tenant).deleteAlertRule(id)) {
+            response.put("success", true);
+            response.put("message", "Rule deleted");
+            return ResponseEntity.ok(response);
+        }
+        response.put("success", false);
+        response.put("message", "Rule not found");
+        return ResponseEntity.status(404).body(response);
+    }
+
+    // Ad-hoc aggregates (sum, count, avg, min, max, pNN) grouped by category, month
+    // and/or weekday, with the same filters as search
+    @PostMapping("/query")
+    public ResponseEntity<Map<String, Object>> query(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                     @RequestBody QuerySpec spec) {
+        ExpenseService expenseService = tenants.get(tenant);
+        Map<String, Object> response = new HashMap<>();
+        String error = spec.validate();
+        if (error != null) {
+            response.put("success", false);
+            response.put("message", "Invalid query: " + error);
+            return ResponseEntity.badRequest().body(response);
+        }
+        long started = System.nanoTime();
+        QueryEngine.Result result = expenseService.query(spec);
+        response.put("success", true);
+        response.put("plan", result.plan());
+        response.put("groups", result.groups());
+        response.put("elapsedMicros", (System.nanoTime() - started) / 1000);
+        return ResponseEntity.ok(response);
+    }
+
+    // LIVE - Server-sent events: changed ids and category totals, coalesced per window
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // EventSource cannot set headers, so the tenant may also be given as ?tenant=
+    public SseEmitter stream(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                             @RequestParam(value = "tenant", required = false) String tenantParam) throws IOException {
+        return changeBroadcaster.subscribe(tenants.get(tenant != null ? tenant : tenantParam));
+    }
+
+    // Current tenant's size and memory use against its limit
+    @GetMapping("/tenant")
+    public Map<String, Object> getTenant(@RequestHeader(value = TENANT_HEADER, required = false) String tenant) {
+        ExpenseService expenseService = tenants.get(tenant);
+        Map<String, Object> response = new HashMap<>();
+        response.put("tenant", expenseService.getTenant());
+        response.put("count", expenseService.getExpenseCount());
+        response.put("estimatedBytes", expenseService.getEstimatedBytes());
+        response.put("maxBytes", expenseService.getMaxBytes());
+        return response;
+    }
+
+    // Prometheus text format: handler and service latencies (p50/p99/p999), rates,
+    // rows and heap per tenant, and response cache hits
+    @GetMapping("/metrics")
+    public ResponseEntity<String> getMetrics() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(metrics.scrape());
     }
 
     // Get categories
     @GetMapping("/categories")
-    public ResponseEntity<Set<String>> getCategories() {
-        return ResponseEntity.ok(expenseService.getCategories());
+    public ResponseEntity<byte[]> getCategories(@RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+                                                ServletWebRequest request) throws IOException {
+        ExpenseService expenseService = tenants.get(tenant);
+        return cached(expenseService, "categories", request, expenseService::getCategories);
     }
-}
 
+    // Serves a read from the versioned response cache. An If-None-Match that
+    // still matches the data version gets a 304 without rendering anything;
+    // otherwise the JSON is rendered at most once per version, gzipped if accepted.
+    private ResponseEntity<byte[]> cached(ExpenseService expenseService, String resource, ServletWebRequest request,
+                                          Supplier<Object> body) throws IOException {
+        // Tenant ids are restricted to token characters, so the key is safe inside an ETag
+        String key = expenseService.getTenant() + "." + resource;
+        long version = expenseService.getVersion();
+        boolean gzip = acceptsGzip(request);
+        if (request.checkNotModified(responseCache.etag(key, version, gzip))) {
+            responseCache.countNotModified();
+            return null;
+        }
+        ResponseCache.Entry entry = responseCache.get(key, version, () -> objectMapper.writeValueAsBytes(body.get()));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING, TENANT_HEADER);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip());
+        }
+        return response.body(entry.body());
+    }
+
+    private static boolean acceptsGzip(ServletWebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+}
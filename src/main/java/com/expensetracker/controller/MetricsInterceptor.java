@@ -0,0 +1,74 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.metrics.LatencyHistogram;
+import com.expensetracker.metrics.Metrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Times every controller handler, labelled by method name, and counts its
+// responses by status class. Streaming and SSE responses are timed until
+// the async request completes, so their latency is the whole transfer.
+@Component
+public class MetricsInterceptor implements HandlerInterceptor {
+    private static final String STARTED = MetricsInterceptor.class.getName() + ".started";
+
+    private static final class HandlerMetrics {
+        final String handler;
+        final LatencyHistogram latency;
+        // Indexed by status / 100, registered on first use so unseen classes are not listed
+        final LongAdder[] responses = new LongAdder[6];
+
+        HandlerMetrics(Metrics metrics, String handler) {
+            this.handler = handler;
+            this.latency = metrics.timer("expense_http_request", "Time spent in each API handler",
+                    Metrics.labels("handler", handler));
+        }
+    }
+
+    private final Metrics metrics;
+    private final Map<Method, HandlerMetrics> handlers = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async dispatches of the same request keep the original start
+        if (request.getAttribute(STARTED) == null) {
+            request.setAttribute(STARTED, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object started = request.getAttribute(STARTED);
+        if (!(handler instanceof HandlerMethod method) || started == null) {
+            return;
+        }
+        HandlerMetrics handlerMetrics = handlers.computeIfAbsent(method.getMethod(),
+                m -> new HandlerMetrics(metrics, m.getName()));
+        handlerMetrics.latency.record(System.nanoTime() - (Long) started);
+        int statusClass = ex != null ? 5 : response.getStatus() / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            LongAdder responses = handlerMetrics.responses[statusClass];
+            if (responses == null) {
+                // Racing threads get the same counter back from the registry
+                responses = metrics.counter("expense_http_responses_total", "API responses by status class",
+                        Metrics.labels("handler", handlerMetrics.handler, "status", statusClass + "xx"));
+                handlerMetrics.responses[statusClass] = responses;
+            }
+            responses.increment();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.metrics.Metrics;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+// Serialized read responses keyed by the service's data version. Each body is
+// rendered once per version, its gzip form is compressed once on first demand,
+// and ETags are derived from the version alone, so a conditional request is
+// answered without rendering anything.
+@Component
+public class ResponseCache {
+
+    public interface Renderer {
+        byte[] render() throws IOException;
+    }
+
+    public static final class Entry {
+        private final long version;
+        private final byte[] body;
+        private volatile byte[] gzip;
+
+        private Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+
+        public byte[] body() {
+            return body;
+        }
+
+        // Racing first requests may both compress; either result is the same
+        public byte[] gzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                compressed = compress(body);
+                gzip = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    private static final class Slot {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Entry entry;
+    }
+
+    // Keeps ETags from one run from matching a different dataset after a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final long maxBodyBytes;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder notModified;
+
+    public ResponseCache(ExpenseProperties properties, Metrics metrics) {
+        this.maxBodyBytes = properties.getCache().getMaxBodySize().toBytes();
+        String name = "expense_response_cache_requests_total";
+        String help = "Cached reads served from a rendered body (hit), rendered (miss) or answered with 304";
+        this.hits = metrics.counter(name, help, Metrics.labels("result", "hit"));
+        this.misses = metrics.counter(name, help, Metrics.labels("result", "miss"));
+        this.notModified = metrics.counter(name, help, Metrics.labels("result", "not_modified"));
+    }
+
+    // The gzip representation gets its own tag, as strong ETags must differ per encoding
+    public String etag(String key, long version, boolean gzip) {
+        return "\"" + key + "-" + epoch + "-" + version + (gzip ? "-gz" : "") + "\"";
+    }
+
+    // Counts a conditional request answered with 304 by the caller
+    public void countNotModified() {
+        notModified.increment();
+    }
+
+    // Returns the body rendered at this version, rendering it if needed. Only one
+    // thread renders a given key at a time; the others wait and reuse its result.
+    public Entry get(String key, long version, Renderer renderer) throws IOException {
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+        Entry entry = slot.entry;
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry;
+        }
+        slot.lock.lock();
+        try {
+            entry = slot.entry;
+            if (entry != null && entry.version == version) {
+                hits.increment();
+                return entry;
+            }
+            misses.increment();
+            Entry rendered = new Entry(version, renderer.render());
+            if (rendered.body.length <= maxBodyBytes && (entry == null || entry.version < version)) {
+                slot.entry = rendered;
+            }
+            return rendered;
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    private static byte[] compress(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,188 @@
+package com.expensetracker.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.web.WebProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+// Serves the files under spring.web.resources.static-locations from memory.
+// Each is read at startup with a gzip copy and a strong ETag (a content hash),
+// so a UI hit is a map lookup and a write of bytes that never change, or a
+// 304. Every CHECK_INTERVAL_MILLIS at most a file's modification time is
+// checked again and a changed file reloaded. Anything not loaded here falls
+// through to Spring's own static resource handling.
+@Component
+public class StaticAssetFilter extends OncePerRequestFilter {
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+    private static final String INDEX = "index.html";
+
+    private static final class Asset {
+        final Resource resource;
+        final long lastModified;
+        final String contentType;
+        final byte[] bytes;
+        // Null when compressing would not make it smaller
+        final byte[] gzip;
+        final String etag;
+        volatile long checkedAt;
+
+        Asset(Resource resource) throws IOException {
+            this.resource = resource;
+            this.lastModified = resource.lastModified();
+            this.contentType = MediaTypeFactory.getMediaType(resource)
+                    .map(type -> type.getType().equals("text") || type.getSubtype().equals("json")
+                            ? type + ";charset=UTF-8" : type.toString())
+                    .orElse("application/octet-stream");
+            try (InputStream in = resource.getInputStream()) {
+                this.bytes = in.readAllBytes();
+            }
+            byte[] compressed = compressible(contentType) ? compress(bytes) : null;
+            this.gzip = compressed != null && compressed.length < bytes.length ? compressed : null;
+            this.etag = hash(bytes);
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    public StaticAssetFilter(WebProperties webProperties) throws IOException {
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        List<String> locations = Arrays.asList(webProperties.getResources().getStaticLocations());
+        for (String location : locations) {
+            Resource root = resolver.getResource(location);
+            if (!root.exists()) {
+                continue;
+            }
+            String base = root.getURI().toString();
+            for (Resource resource : resolver.getResources(location + "**/*")) {
+                String uri = resource.getURI().toString();
+                if (!resource.isReadable() || uri.endsWith("/") || !uri.startsWith(base)) {
+                    continue;
+                }
+                // Earlier locations take precedence, as with Spring's resource handler
+                String path = uri.substring(base.length());
+                if (!assets.containsKey(path)) {
+                    assets.put(path, new Asset(resource));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !method.equals("GET") && !method.equals("HEAD");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Asset asset = path.startsWith("/api/") ? null : get(path.equals("/") ? INDEX : path.substring(1));
+        if (asset == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = asset.gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        // Each encoding is a different representation, so it gets its own strong tag
+        String etag = "\"" + asset.etag + (gzip ? "-gz" : "") + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        // HTML is revalidated on every load so a new UI shows up at once; the 304 is cheap
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                asset.contentType.startsWith("text/html") ? "no-cache" : "public, max-age=3600");
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = gzip ? asset.gzip : asset.bytes;
+        response.setContentType(asset.contentType);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!request.getMethod().equals("HEAD")) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    // The cached asset, reloaded first if its file changed since it was last checked
+    private Asset get(String path) throws IOException {
+        Asset asset = assets.get(path);
+        if (asset == null || System.currentTimeMillis() - asset.checkedAt < CHECK_INTERVAL_MILLIS) {
+            return asset;
+        }
+        asset.checkedAt = System.currentTimeMillis();
+        try {
+            if (asset.resource.lastModified() == asset.lastModified) {
+                return asset;
+            }
+            Asset reloaded = new Asset(asset.resource);
+            assets.put(path, reloaded);
+            return reloaded;
+        } catch (IOException e) {
+            // Deleted: let the default handler answer
+            assets.remove(path);
+            return null;
+        }
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("application/javascript") || contentType.startsWith("image/svg");
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // First 16 bytes of the SHA-256, URL-safe base64
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+package com.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+// Body of POST /api/alerts/rules, also bound from expense.alerts.rules[n].*:
+// {"category": "Food", "window": "month", "threshold": 500}              Food over 500 in a calendar month
+// {"window": "expense", "threshold": 1000}                               any single expense over 1000
+// {"category": "Travel", "window": "sliding", "days": 30, "threshold": 2000}  Travel over 2000 in the last 30 days
+// Without a category the rule covers all expenses together. Calendar weeks run Monday to Sunday.
+public class AlertRule {
+    public static final String EXPENSE = "expense";
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+    public static final String YEAR = "year";
+    public static final String SLIDING = "sliding";
+    public static final List<String> WINDOWS = List.of(EXPENSE, DAY, WEEK, MONTH, YEAR, SLIDING);
+    public static final int MAX_SLIDING_DAYS = 366;
+
+    private String category;
+    private String window;
+    private Integer days;
+    private BigDecimal threshold;
+
+    // Returns why this rule cannot be used, or null when it is valid
+    public String validate(Currency currency) {
+        if (window == null || !WINDOWS.contains(window)) {
+            return "window must be one of " + WINDOWS;
+        }
+        if (SLIDING.equals(window) && (days == null || days < 1 || days > MAX_SLIDING_DAYS)) {
+            return "A sliding window needs days between 1 and " + MAX_SLIDING_DAYS;
+        }
+        if (!SLIDING.equals(window) && days != null) {
+            return "days only applies to sliding windows";
+        }
+        if (threshold == null) {
+            return "Missing threshold";
+        }
+        try {
+            if (Money.parse(threshold, currency) < 0) {
+                return "threshold must not be negative";
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    public long thresholdCents() {
+        return Money.toCents(threshold);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category != null && !category.isBlank() ? category.trim() : null;
+    }
+
+    public String getWindow() {
+        return window;
+    }
+
+    public void setWindow(String window) {
+        this.window = window != null ? window.trim().toLowerCase() : null;
+    }
+
+    public Integer getDays() {
+        return days;
+    }
+
+    public void setDays(Integer days) {
+        this.days = days;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(BigDecimal threshold) {
+        this.threshold = threshold;
+    }
+}
@@ -0,0 +1,116 @@
+package com.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Currency;
+
+// One entry of POST /api/expenses/batch:
+// {"op": "add" | "update" | "delete", "id": 3, "category": "...", "amount": 1.5, "date": "2024-01-15", "description": "..."}
+public class BatchOperation {
+    public static final String ADD = "add";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private Long id;
+    private String category;
+    private BigDecimal amount;
+    private String date;
+    private String description;
+
+    // Returns why this operation cannot be applied, or null when it is valid
+    public String validate(Currency currency) {
+        if (op == null) {
+            return "Missing op";
+        }
+        switch (op) {
+            case ADD:
+                break;
+            case UPDATE:
+            case DELETE:
+                if (id == null) {
+                    return "Missing id";
+                }
+                break;
+            default:
+                return "Unknown op: " + op;
+        }
+        if (DELETE.equals(op)) {
+            return null;
+        }
+        if (category == null || category.isBlank()) {
+            return "Missing category";
+        }
+        if (amount == null) {
+            return "Missing amount";
+        }
+        try {
+            Money.parse(amount, currency);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (date != null && !date.isEmpty()) {
+            try {
+                LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                return "Invalid date: " + date;
+            }
+        }
+        return null;
+    }
+
+    // The row an add or update writes; same defaults as the single-expense endpoints
+    public Expense toExpense() {
+        LocalDate parsedDate = date != null && !date.isEmpty() ? LocalDate.parse(date) : LocalDate.now();
+        return new Expense(category, Money.toCents(amount), parsedDate, description != null ? description : "");
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,51 @@
+package com.expensetracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// Outcome of one batch entry, kept small: {"i": 0, "status": "created", "id": 21}
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"i", "status", "id", "message"})
+public class BatchResult {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INVALID = "invalid";
+
+    private final int index;
+    private final String status;
+    private final Long id;
+    private final String message;
+
+    public BatchResult(int index, String status, Long id, String message) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    @JsonProperty("i")
+    public int getIndex() {
+        return index;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @JsonIgnore
+    public boolean isInvalid() {
+        return INVALID.equals(status);
+    }
+}
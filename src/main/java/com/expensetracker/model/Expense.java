@@ -1,19 +1,23 @@
 package com.expensetracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 public class Expense {
     private Long id;
     private String category;
-    private Double amount;
+    // Whole cents (see Money); JSON shows it as the decimal "amount"
+    private long amountCents;
     private LocalDate date;
     private String description;
 
     public Expense() {}
 
-    public Expense(String category, Double amount, LocalDate date, String description) {
+    public Expense(String category, long amountCents, LocalDate date, String description) {
         this.category = category;
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.date = date;
         this.description = description;
     }
@@ -34,12 +38,21 @@ public class Expense {
         this.category = category;
     }
 
-    public Double getAmount() {
-        return amount;
+    public BigDecimal getAmount() {
+        return Money.toDecimal(amountCents);
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amountCents = Money.toCents(amount);
+    }
+
+    @JsonIgnore
+    public long getAmountCents() {
+        return amountCents;
     }
 
-    public void setAmount(Double amount) {
-        this.amount = amount;
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
 
     public LocalDate getDate() {
@@ -0,0 +1,105 @@
+package com.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+
+// Amounts are whole cents in a long: sums are exact and primitive, unlike the
+// doubles they replace, whose totals drifted by cents at volume. Any currency
+// with at most two decimal places fits the cent scale; parsing rejects more
+// decimals than the configured currency has.
+//
+// Single amounts are capped at ten billion units, so millions of rows sum far
+// below Long.MAX_VALUE; aggregates still add with Math.addExact so an overflow
+// fails loudly instead of wrapping.
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long MAX_CENTS = 1_000_000_000_000L;
+
+    private Money() {
+    }
+
+    // Exact decimal view, always with two decimal places ("12.50")
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    public static long toCents(BigDecimal amount) {
+        if (amount.stripTrailingZeros().scale() > SCALE) {
+            throw new IllegalArgumentException("Amount has more than " + SCALE + " decimal places: "
+                    + amount.toPlainString());
+        }
+        BigDecimal cents = amount.movePointRight(SCALE);
+        if (cents.abs().compareTo(BigDecimal.valueOf(MAX_CENTS)) > 0) {
+            throw new IllegalArgumentException("Amount out of range: " + amount.toPlainString());
+        }
+        return cents.longValueExact();
+    }
+
+    public static boolean inRange(long cents) {
+        return cents >= -MAX_CENTS && cents <= MAX_CENTS;
+    }
+
+    // A JSON number or a string such as "12.5", "USD 1,234.50" or "$1,234.50"
+    // (the currency code or symbol must be the given currency's). Rejects more
+    // decimal places than the currency has, e.g. any for JPY.
+    public static long parse(Object value, Currency currency) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing amount");
+        }
+        BigDecimal amount;
+        if (value instanceof BigDecimal decimal) {
+            amount = decimal;
+        } else if (value instanceof Integer || value instanceof Long) {
+            amount = BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number number) {
+            // Shortest decimal that round-trips the double, not its binary expansion
+            amount = new BigDecimal(number.toString());
+        } else {
+            amount = parseText(value.toString().trim(), currency);
+        }
+        if (amount.stripTrailingZeros().scale() > currency.getDefaultFractionDigits()) {
+            throw new IllegalArgumentException(currency.getCurrencyCode() + " amounts have at most "
+                    + currency.getDefaultFractionDigits() + " decimal places: " + amount.toPlainString());
+        }
+        return toCents(amount);
+    }
+
+    private static BigDecimal parseText(String text, Currency currency) {
+        boolean negative = text.startsWith("-");
+        String rest = negative ? text.substring(1).trim() : text;
+        for (String prefix : new String[] {currency.getCurrencyCode(), currency.getSymbol(Locale.US)}) {
+            if (rest.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                rest = rest.substring(prefix.length()).trim();
+                break;
+            }
+        }
+        try {
+            BigDecimal amount = new BigDecimal(rest.replace(",", ""));
+            return negative ? amount.negate() : amount;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount: " + text);
+        }
+    }
+
+    // Display text in the currency's own number of decimals, e.g. "$1,234.50" or "¥1,235"
+    public static String format(long cents, Currency currency, Locale locale) {
+        NumberFormat format = NumberFormat.getCurrencyInstance(locale);
+        format.setCurrency(currency);
+        format.setMinimumFractionDigits(currency.getDefaultFractionDigits());
+        format.setMaximumFractionDigits(currency.getDefaultFractionDigits());
+        format.setRoundingMode(RoundingMode.HALF_EVEN);
+        return format.format(toDecimal(cents));
+    }
+
+    // Fails for currencies needing more than the two decimals cents can hold (BHD, KWD, ...)
+    public static Currency checkCurrency(Currency currency) {
+        if (currency.getDefaultFractionDigits() < 0 || currency.getDefaultFractionDigits() > SCALE) {
+            throw new IllegalArgumentException("Currency " + currency.getCurrencyCode() + " has "
+                    + currency.getDefaultFractionDigits() + " decimal places, at most " + SCALE + " are supported");
+        }
+        return currency;
+    }
+}
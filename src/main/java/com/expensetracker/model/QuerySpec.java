@@ -0,0 +1,162 @@
+package com.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Body of POST /api/query. Filters use the same names as GET /api/expenses/search:
+// {"q": "lunch", "category": "Food", "minAmount": 5, "maxAmount": 50, "from": "2024-01-01", "to": "2024-12-31",
+//  "groupBy": ["category", "month"], "aggregates": ["sum", "count", "avg", "min", "max", "p50", "p99"]}
+public class QuerySpec {
+    public static final String CATEGORY = "category";
+    public static final String MONTH = "month";
+    public static final String WEEKDAY = "weekday";
+    public static final List<String> GROUPINGS = List.of(CATEGORY, MONTH, WEEKDAY);
+    public static final List<String> AGGREGATES = List.of("sum", "count", "avg", "min", "max");
+
+    private String q;
+    private String category;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String from;
+    private String to;
+    private List<String> groupBy = List.of();
+    private List<String> aggregates = List.of("sum", "count");
+
+    // Returns why this query cannot run, or null when it is valid
+    public String validate() {
+        if (groupBy == null || aggregates == null || aggregates.isEmpty()) {
+            return "groupBy and aggregates must be lists, aggregates not empty";
+        }
+        Set<String> seen = new HashSet<>();
+        for (String grouping : groupBy) {
+            if (!GROUPINGS.contains(grouping)) {
+                return "Unknown groupBy: " + grouping + ", expected one of " + GROUPINGS;
+            }
+            if (!seen.add(grouping)) {
+                return "Duplicate groupBy: " + grouping;
+            }
+        }
+        for (String aggregate : aggregates) {
+            if (!AGGREGATES.contains(aggregate) && Double.isNaN(percentile(aggregate))) {
+                return "Unknown aggregate: " + aggregate + ", expected one of " + AGGREGATES + " or p0-p100";
+            }
+        }
+        for (BigDecimal amount : new BigDecimal[] {minAmount, maxAmount}) {
+            if (amount != null) {
+                try {
+                    Money.toCents(amount);
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+            }
+        }
+        for (String date : new String[] {from, to}) {
+            if (date != null && !date.isEmpty()) {
+                try {
+                    LocalDate.parse(date);
+                } catch (DateTimeParseException e) {
+                    return "Invalid date: " + date;
+                }
+            }
+        }
+        return null;
+    }
+
+    // The percentile an aggregate such as "p95" or "p99.9" names, or NaN if it is not one
+    public static double percentile(String aggregate) {
+        if (aggregate.length() < 2 || aggregate.charAt(0) != 'p') {
+            return Double.NaN;
+        }
+        try {
+            double p = Double.parseDouble(aggregate.substring(1));
+            return p >= 0 && p <= 100 ? p : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Amount bounds in cents, null when open
+    public Long minCents() {
+        return minAmount != null ? Money.toCents(minAmount) : null;
+    }
+
+    public Long maxCents() {
+        return maxAmount != null ? Money.toCents(maxAmount) : null;
+    }
+
+    public LocalDate fromDate() {
+        return from != null && !from.isEmpty() ? LocalDate.parse(from) : null;
+    }
+
+    public LocalDate toDate() {
+        return to != null && !to.isEmpty() ? LocalDate.parse(to) : null;
+    }
+
+    public String getQ() {
+        return q;
+    }
+
+    public void setQ(String q) {
+        this.q = q;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(BigDecimal minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public List<String> getAggregates() {
+        return aggregates;
+    }
+
+    public void setAggregates(List<String> aggregates) {
+        this.aggregates = aggregates;
+    }
+}
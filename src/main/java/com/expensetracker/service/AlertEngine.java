@@ -0,0 +1,446 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.AlertRule;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Budget and threshold rules evaluated as expenses are written. ExpenseService
+// passes every row it adds or removes (under its write lock), and each rule
+// keeps just enough window state to tell in O(1) whether that write took it
+// over its threshold: a total per calendar period for tumbling windows, a ring
+// of day totals for sliding ones. Rules are indexed by category, so a write
+// visits only the rules for its category and the all-category ones, and its
+// cost does not grow with the rows stored.
+//
+// A rule fires when a total goes from at or under its threshold to over it,
+// and again only after dropping back. An update is measured from the total
+// before the row it replaces was taken out, so one that leaves a total (or,
+// for expense rules, the row itself) over its threshold does not fire again.
+// Alerts go onto an AlertQueue. Rules are kept in memory; a new rule starts
+// from the rollups, not from the rows.
+public class AlertEngine {
+
+    // Tumbling rules keep the periods overlapping this many days up to today,
+    // plus any dated ahead of it; writes to older periods are ignored
+    static final int RETAINED_DAYS = 366;
+
+    // Below any total, so a plain write is measured from the window's own
+    private static final long NOT_HELD = Long.MIN_VALUE;
+
+    // Serialized with "threshold" and "total" as decimals. category is the
+    // rule's (null for all expenses); expenseId is the row that crossed it.
+    public record Alert(long seq, long ruleId, String category, String window, String period,
+                        @JsonIgnore long thresholdCents, @JsonIgnore long totalCents, long expenseId,
+                        Instant firedAt) {
+        @JsonProperty("threshold")
+        public BigDecimal threshold() {
+            return Money.toDecimal(thresholdCents);
+        }
+
+        @JsonProperty("total")
+        public BigDecimal total() {
+            return Money.toDecimal(totalCents);
+        }
+    }
+
+    // A rule and its total for the window containing today (null for expense rules)
+    public record RuleStatus(long id, String category, String window, Integer days, BigDecimal threshold,
+                             String period, @JsonIgnore Long currentCents) {
+        @JsonProperty("current")
+        public BigDecimal current() {
+            return currentCents != null ? Money.toDecimal(currentCents) : null;
+        }
+    }
+
+    private abstract class Rule {
+        final long id;
+        final AlertRule definition;
+        final long threshold;
+
+        Rule(long id, AlertRule definition) {
+            this.id = id;
+            this.definition = definition;
+            this.threshold = definition.thresholdCents();
+        }
+
+        // Adds a row's amount (negative when it is removed) to the window it
+        // falls in. held is what held() returned before the replaced row was
+        // removed, or NOT_HELD for a plain add or remove.
+        abstract void apply(Expense expense, long amount, long held);
+
+        // The total a replacing row is measured from, taken before the row it
+        // replaces is removed
+        abstract long held(Expense previous, Expense expense);
+
+        abstract RuleStatus status(long today);
+
+        boolean covers(Expense expense) {
+            return definition.getCategory() == null || definition.getCategory().equals(expense.getCategory());
+        }
+
+        boolean crossed(long before, long after) {
+            return before <= threshold && after > threshold;
+        }
+
+        RuleStatus status(String period, Long current) {
+            return new RuleStatus(id, definition.getCategory(), definition.getWindow(), definition.getDays(),
+                    definition.getThreshold(), period, current);
+        }
+    }
+
+    // Each added row on its own
+    private final class ExpenseRule extends Rule {
+        ExpenseRule(long id, AlertRule definition) {
+            super(id, definition);
+        }
+
+        @Override
+        void apply(Expense expense, long amount, long held) {
+            if (crossed(held, amount)) {
+                fire(this, expense.getDate().toString(), amount, expense.getId());
+            }
+        }
+
+        @Override
+        long held(Expense previous, Expense expense) {
+            return covers(previous) ? previous.getAmountCents() : NOT_HELD;
+        }
+
+        @Override
+        RuleStatus status(long today) {
+            return status(null, null);
+        }
+    }
+
+    // Calendar days, weeks, months or years, by the expense's date. Every
+    // retained period keeps its total, so deleting a recent row updates the
+    // right one; periods before RETAINED_DAYS are dropped as the date moves on.
+    private final class TumblingRule extends Rule {
+        private final NavigableMap<Long, Long> totals = new TreeMap<>();
+        private long oldest;
+
+        TumblingRule(long id, AlertRule definition, RollupIndex rollups, long today) {
+            super(id, definition);
+            this.oldest = oldestKey(today);
+            String window = definition.getWindow();
+            RollupIndex.Granularity granularity = switch (window) {
+                case AlertRule.MONTH -> RollupIndex.Granularity.MONTH;
+                case AlertRule.YEAR -> RollupIndex.Granularity.YEAR;
+                default -> RollupIndex.Granularity.DAY;
+            };
+            rollups.forEachBucket(granularity, definition.getCategory(), (bucketKey, bucket) -> {
+                long key = window.equals(AlertRule.WEEK) ? week(bucketKey) : bucketKey;
+                if (key >= oldest) {
+                    totals.merge(key, bucket.totalCents(), Long::sum);
+                }
+            });
+        }
+
+        @Override
+        void apply(Expense expense, long amount, long held) {
+            advance(today());
+            long key = key(expense.getDate());
+            if (key < oldest) {
+                return;
+            }
+            long before = totals.getOrDefault(key, 0L);
+            long after = before + amount;
+            totals.put(key, after);
+            if (crossed(Math.max(before, held), after)) {
+                fire(this, label(key), after, expense.getId());
+            }
+        }
+
+        @Override
+        long held(Expense previous, Expense expense) {
+            advance(today());
+            return totals.getOrDefault(key(expense.getDate()), 0L);
+        }
+
+        @Override
+        RuleStatus status(long today) {
+            advance(today);
+            long key = key(LocalDate.ofEpochDay(today));
+            return status(label(key), totals.getOrDefault(key, 0L));
+        }
+
+        private void advance(long today) {
+            long key = oldestKey(today);
+            if (key > oldest) {
+                totals.headMap(key).clear();
+                oldest = key;
+            }
+        }
+
+        private long oldestKey(long today) {
+            return key(LocalDate.ofEpochDay(today - RETAINED_DAYS + 1));
+        }
+
+        private long key(LocalDate date) {
+            return switch (definition.getWindow()) {
+                case AlertRule.DAY -> date.toEpochDay();
+                case AlertRule.WEEK -> week(date.toEpochDay());
+                case AlertRule.MONTH -> date.getYear() * 12L + date.getMonthValue() - 1;
+                default -> date.getYear();
+            };
+        }
+
+        private String label(long key) {
+            return switch (definition.getWindow()) {
+                case AlertRule.DAY -> LocalDate.ofEpochDay(key).toString();
+                // The Monday starting the week
+                case AlertRule.WEEK -> LocalDate.ofEpochDay(key * 7 - 3).toString();
+                case AlertRule.MONTH -> YearMonth.of((int) Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1).toString();
+                default -> Long.toString(key);
+            };
+        }
+
+        // Weeks since the one starting Monday 1969-12-29 (epoch day 0 was a Thursday)
+        private static long week(long epochDay) {
+            return Math.floorDiv(epochDay + 3, 7);
+        }
+    }
+
+    // The last N days up to today. Day totals sit in a ring indexed by epoch day
+    // mod N; days leaving the window are subtracted as the date moves on, each
+    // once. Rows dated after today are totalled by day in ahead and enter the
+    // ring when their day comes; rows dated before the window do not count.
+    private final class SlidingRule extends Rule {
+        private final int days;
+        private final long[] totals;
+        private final long[] slotDays;
+        private final NavigableMap<Long, Long> ahead = new TreeMap<>();
+        private long sum;
+        private long today;
+
+        SlidingRule(long id, AlertRule definition, RollupIndex rollups, long today) {
+            super(id, definition);
+            this.days = definition.getDays();
+            this.totals = new long[days];
+            this.slotDays = new long[days];
+            Arrays.fill(slotDays, Long.MIN_VALUE);
+            this.today = today;
+            rollups.forEachBucket(RollupIndex.Granularity.DAY, definition.getCategory(), (day, bucket) -> {
+                if (day > today) {
+                    ahead.put(day, bucket.totalCents());
+                } else if (inWindow(day)) {
+                    addToRing(day, bucket.totalCents());
+                }
+            });
+        }
+
+        @Override
+        void apply(Expense expense, long amount, long held) {
+            advance(today());
+            long day = expense.getDate().toEpochDay();
+            if (day > today) {
+                if (ahead.merge(day, amount, Long::sum) == 0) {
+                    ahead.remove(day);
+                }
+                return;
+            }
+            if (!inWindow(day)) {
+                return;
+            }
+            long before = Math.max(sum, held);
+            addToRing(day, amount);
+            if (crossed(before, sum)) {
+                fire(this, period(), sum, expense.getId());
+            }
+        }
+
+        @Override
+        RuleStatus status(long now) {
+            advance(now);
+            return status(period(), sum);
+        }
+
+        private boolean inWindow(long day) {
+            return day > today - days && day <= today;
+        }
+
+        @Override
+        long held(Expense previous, Expense expense) {
+            advance(today());
+            return inWindow(expense.getDate().toEpochDay()) ? sum : NOT_HELD;
+        }
+
+        private void addToRing(long day, long amount) {
+            int slot = Math.floorMod(day, days);
+            if (slotDays[slot] != day) {
+                slotDays[slot] = day;
+                totals[slot] = 0;
+            }
+            totals[slot] += amount;
+            sum += amount;
+        }
+
+        // A total raised only by days arriving from ahead does not fire; it
+        // shows in status and the next write is measured against it
+        private void advance(long now) {
+            if (now <= today) {
+                return;
+            }
+            for (long day = today - days + 1; day <= Math.min(now - days, today); day++) {
+                int slot = Math.floorMod(day, days);
+                if (slotDays[slot] == day) {
+                    sum -= totals[slot];
+                    totals[slot] = 0;
+                    slotDays[slot] = Long.MIN_VALUE;
+                }
+            }
+            today = now;
+            NavigableMap<Long, Long> arrived = ahead.headMap(now, true);
+            for (Map.Entry<Long, Long> entry : arrived.entrySet()) {
+                if (inWindow(entry.getKey())) {
+                    addToRing(entry.getKey(), entry.getValue());
+                }
+            }
+            arrived.clear();
+        }
+
+        private String period() {
+            return LocalDate.ofEpochDay(today - days + 1) + "/" + LocalDate.ofEpochDay(today);
+        }
+    }
+
+    private final AlertQueue queue;
+    private final ServiceMetrics metrics;
+    private final Clock clock;
+    private final Map<Long, Rule> rules = new LinkedHashMap<>();
+    private final Map<String, List<Rule>> byCategory = new HashMap<>();
+    private final List<Rule> allCategories = new ArrayList<>();
+    private long nextId = 1;
+
+    AlertEngine(AlertQueue queue, ServiceMetrics metrics, Clock clock) {
+        this.queue = queue;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    public AlertQueue getQueue() {
+        return queue;
+    }
+
+    // The rule must have passed validate(). Callers hold the service's write lock.
+    public RuleStatus addRule(AlertRule definition, RollupIndex rollups) {
+        long id = nextId++;
+        long today = today();
+        Rule rule = switch (definition.getWindow()) {
+            case AlertRule.EXPENSE -> new ExpenseRule(id, definition);
+            case AlertRule.SLIDING -> new SlidingRule(id, definition, rollups, today);
+            default -> new TumblingRule(id, definition, rollups, today);
+        };
+        rules.put(id, rule);
+        rulesFor(definition.getCategory()).add(rule);
+        return rule.status(today);
+    }
+
+    public boolean removeRule(long id) {
+        Rule rule = rules.remove(id);
+        if (rule == null) {
+            return false;
+        }
+        String category = rule.definition.getCategory();
+        List<Rule> list = rulesFor(category);
+        list.remove(rule);
+        if (category != null && list.isEmpty()) {
+            byCategory.remove(category);
+        }
+        return true;
+    }
+
+    public List<RuleStatus> getRules() {
+        long today = today();
+        List<RuleStatus> statuses = new ArrayList<>(rules.size());
+        for (Rule rule : rules.values()) {
+            statuses.add(rule.status(today));
+        }
+        return statuses;
+    }
+
+    public void add(Expense expense) {
+        apply(expense, expense.getAmountCents());
+    }
+
+    public void remove(Expense expense) {
+        apply(expense, -expense.getAmountCents());
+    }
+
+    // A row replaced by a write to the same id
+    public void update(Expense previous, Expense expense) {
+        List<Rule> forCategory = byCategory.getOrDefault(expense.getCategory(), List.of());
+        long[] held = new long[forCategory.size() + allCategories.size()];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = rule(forCategory, i).held(previous, expense);
+        }
+        remove(previous);
+        if (held.length == 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < held.length; i++) {
+            rule(forCategory, i).apply(expense, expense.getAmountCents(), held[i]);
+        }
+        metrics.alertEvaluation.record(System.nanoTime() - started);
+    }
+
+    private void apply(Expense expense, long amount) {
+        List<Rule> forCategory = byCategory.get(expense.getCategory());
+        if (forCategory == null && allCategories.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        if (forCategory != null) {
+            for (Rule rule : forCategory) {
+                applyTo(rule, expense, amount);
+            }
+        }
+        for (Rule rule : allCategories) {
+            applyTo(rule, expense, amount);
+        }
+        metrics.alertEvaluation.record(System.nanoTime() - started);
+    }
+
+    private static void applyTo(Rule rule, Expense expense, long amount) {
+        // A removal can never take a single expense over its threshold
+        if (amount >= 0 || !(rule instanceof ExpenseRule)) {
+            rule.apply(expense, amount, NOT_HELD);
+        }
+    }
+
+    // The i-th of the rules for a category followed by the all-category ones
+    private Rule rule(List<Rule> forCategory, int i) {
+        return i < forCategory.size() ? forCategory.get(i) : allCategories.get(i - forCategory.size());
+    }
+
+    private void fire(Rule rule, String period, long total, long expenseId) {
+        queue.publish(seq -> new Alert(seq, rule.id, rule.definition.getCategory(), rule.definition.getWindow(),
+                period, rule.threshold, total, expenseId, clock.instant()));
+        metrics.alertsFired.increment();
+    }
+
+    private List<Rule> rulesFor(String category) {
+        return category == null ? allCategories : byCategory.computeIfAbsent(category, c -> new ArrayList<>());
+    }
+
+    private long today() {
+        return LocalDate.now(clock).toEpochDay();
+    }
+}
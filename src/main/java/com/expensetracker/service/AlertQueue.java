@@ -0,0 +1,59 @@
+package com.expensetracker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+// The in-process queue AlertEngine emits onto: the latest alerts in the order
+// they fired, numbered from 1. Readers keep their own position (the last seq
+// they saw) instead of taking alerts off, so /api/alerts and any other
+// consumer each see every alert. Once capacity is reached the oldest are
+// dropped, so a reader that falls that far behind skips ahead.
+public class AlertQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AlertEngine.Alert[] ring;
+    // Guarded by lock
+    private long lastSeq;
+
+    public AlertQueue(int capacity) {
+        this.ring = new AlertEngine.Alert[Math.max(1, capacity)];
+    }
+
+    // Numbers the alert built by the factory and appends it
+    AlertEngine.Alert publish(LongFunction<AlertEngine.Alert> factory) {
+        lock.lock();
+        try {
+            AlertEngine.Alert alert = factory.apply(++lastSeq);
+            ring[(int) (lastSeq % ring.length)] = alert;
+            return alert;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Up to limit alerts numbered after seq, oldest first
+    public List<AlertEngine.Alert> after(long seq, int limit) {
+        lock.lock();
+        try {
+            long first = Math.max(Math.max(seq, 0) + 1, lastSeq - ring.length + 1);
+            long last = Math.min(lastSeq, first + Math.max(0, limit) - 1);
+            List<AlertEngine.Alert> alerts = new ArrayList<>((int) Math.max(0, last - first + 1));
+            for (long s = first; s <= last; s++) {
+                alerts.add(ring[(int) (s % ring.length)]);
+            }
+            return alerts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Running per-category sums and counts, kept up to date by ExpenseService on
+// every write so statistics never have to rescan the expenses. Sums are exact
+// cents. Mutators must be called under the service's write lock; readers can
+// run concurrently.
+public class CategoryAggregates {
+
+    // Serialized as {"category", "sum" (decimal), "count"}
+    public record CategoryTotal(String category, @JsonIgnore long sumCents, long count) {
+        @JsonProperty("sum")
+        public BigDecimal sum() {
+            return Money.toDecimal(sumCents);
+        }
+    }
+
+    private static final Comparator<CategoryTotal> BY_SUM =
+            Comparator.comparingLong(CategoryTotal::sumCents).thenComparing(CategoryTotal::category);
+
+    private final ConcurrentHashMap<String, CategoryTotal> totals = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<CategoryTotal> ranking = new ConcurrentSkipListSet<>(BY_SUM);
+    private volatile long total;
+    private volatile long count;
+
+    // Accumulates changes from many writes so each touched category is re-ranked once
+    public class Delta {
+        // category -> {cents, count}
+        private final Map<String, long[]> changes = new HashMap<>();
+
+        public void add(String category, long cents) {
+            accumulate(category, cents, 1);
+        }
+
+        public void remove(String category, long cents) {
+            accumulate(category, -cents, -1);
+        }
+
+        private void accumulate(String category, long cents, long count) {
+            long[] change = changes.computeIfAbsent(category, c -> new long[2]);
+            change[0] = Math.addExact(change[0], cents);
+            change[1] += count;
+        }
+
+        public void commit() {
+            for (Map.Entry<String, long[]> entry : changes.entrySet()) {
+                long[] change = entry.getValue();
+                if (change[1] != 0 || change[0] != 0) {
+                    apply(entry.getKey(), change[0], change[1]);
+                }
+            }
+            changes.clear();
+        }
+    }
+
+    public Delta newDelta() {
+        return new Delta();
+    }
+
+    public void add(String category, long cents) {
+        apply(category, cents, 1);
+    }
+
+    public void remove(String category, long cents) {
+        apply(category, -cents, -1);
+    }
+
+    private void apply(String category, long centsDelta, long countDelta) {
+        CategoryTotal previous = totals.get(category);
+        long sum = centsDelta;
+        long rows = countDelta;
+        if (previous != null) {
+            sum = Math.addExact(sum, previous.sumCents());
+            rows += previous.count();
+        }
+        long newTotal = Math.addExact(total, centsDelta);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        if (rows > 0) {
+            CategoryTotal next = new CategoryTotal(category, sum, rows);
+            totals.put(category, next);
+            ranking.add(next);
+        } else {
+            totals.remove(category);
+        }
+        count += countDelta;
+        total = newTotal;
+    }
+
+    public long getTotalCents() {
+        return total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // Null when the category has no rows
+    public CategoryTotal get(String category) {
+        return totals.get(category);
+    }
+
+    public Map<String, BigDecimal> getTotalByCategory() {
+        Map<String, BigDecimal> result = new HashMap<>();
+        for (CategoryTotal categoryTotal : totals.values()) {
+            result.put(categoryTotal.category(), categoryTotal.sum());
+        }
+        return result;
+    }
+
+    public CategoryTotal getHighest() {
+        Iterator<CategoryTotal> it = ranking.descendingIterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    public CategoryTotal getLowest() {
+        Iterator<CategoryTotal> it = ranking.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
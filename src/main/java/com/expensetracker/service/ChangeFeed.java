@@ -0,0 +1,70 @@
+package com.expensetracker.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Rows and categories touched since the last drain. Only ids are kept, and at
+// most ChangeSet.MAX_IDS of them: past that the feed just remembers that it
+// overflowed, so it stays small however many writes happen between drains.
+// Used under the service's write lock.
+class ChangeFeed {
+
+    private Set<Long> upserted = new LinkedHashSet<>();
+    private Set<Long> deleted = new LinkedHashSet<>();
+    private final Set<String> categories = new HashSet<>();
+    private boolean overflow;
+
+    void put(long id, String category) {
+        categories.add(category);
+        if (track()) {
+            deleted.remove(id);
+            upserted.add(id);
+        }
+    }
+
+    void delete(long id, String category) {
+        categories.add(category);
+        if (track()) {
+            upserted.remove(id);
+            deleted.add(id);
+        }
+    }
+
+    void touch(String category) {
+        categories.add(category);
+    }
+
+    private boolean track() {
+        if (!overflow && upserted.size() + deleted.size() >= ChangeSet.MAX_IDS) {
+            overflow = true;
+            upserted = new LinkedHashSet<>();
+            deleted = new LinkedHashSet<>();
+        }
+        return !overflow;
+    }
+
+    boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    ChangeSet drain(long version, CategoryAggregates aggregates) {
+        Map<String, CategoryAggregates.CategoryTotal> totals = new HashMap<>();
+        for (String category : categories) {
+            totals.put(category, aggregates.get(category));
+        }
+        ChangeSet changes = new ChangeSet(version, overflow, upserted, deleted, totals,
+                aggregates.getTotalCents(), aggregates.getCount(), aggregates.getHighest(), aggregates.getLowest());
+        clear();
+        return changes;
+    }
+
+    void clear() {
+        upserted = new LinkedHashSet<>();
+        deleted = new LinkedHashSet<>();
+        categories.clear();
+        overflow = false;
+    }
+}
@@ -0,0 +1,47 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// What changed between two data versions: ids of rows added or updated, ids
+// deleted, and the new totals of every category touched (null once a category
+// has no rows left), plus the overall stats after the change. When "reset" is
+// set the id sets were too large to track and clients should reload instead.
+public record ChangeSet(long version, boolean reset, Set<Long> upserted, Set<Long> deleted,
+                        Map<String, CategoryAggregates.CategoryTotal> categories, @JsonIgnore long totalCents,
+                        long count, CategoryAggregates.CategoryTotal highest, CategoryAggregates.CategoryTotal lowest) {
+
+    // More ids than this in one change set are collapsed into a reset
+    public static final int MAX_IDS = 10_000;
+
+    @JsonProperty("total")
+    public BigDecimal total() {
+        return Money.toDecimal(totalCents);
+    }
+
+    // This change set followed by a later one, as if both had been drained together
+    public ChangeSet mergedWith(ChangeSet next) {
+        Map<String, CategoryAggregates.CategoryTotal> mergedCategories = new HashMap<>(categories);
+        mergedCategories.putAll(next.categories);
+        boolean mergedReset = reset || next.reset
+                || upserted.size() + deleted.size() + next.upserted.size() + next.deleted.size() > MAX_IDS;
+        Set<Long> mergedUpserted = new LinkedHashSet<>();
+        Set<Long> mergedDeleted = new LinkedHashSet<>();
+        if (!mergedReset) {
+            mergedUpserted.addAll(upserted);
+            mergedUpserted.removeAll(next.deleted);
+            mergedUpserted.addAll(next.upserted);
+            mergedDeleted.addAll(deleted);
+            mergedDeleted.addAll(next.deleted);
+        }
+        return new ChangeSet(next.version, mergedReset, mergedUpserted, mergedDeleted, mergedCategories,
+                next.totalCents, next.count, next.highest, next.lowest);
+    }
+}
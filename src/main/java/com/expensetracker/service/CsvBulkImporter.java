@@ -0,0 +1,476 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.Money;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Parses "Category,Amount,Date,Description" CSV files. The file is memory-mapped
+// in line-aligned chunks that are parsed in parallel straight from the mapped
+// bytes: amounts (to whole cents) and dates are decoded digit by digit, category names are
+// interned per chunk, and only descriptions allocate a String per row. Rows
+// that fail to parse are reported with their line number instead of dropped.
+// Chunks are parsed one round (a chunk per core) at a time and handed to the
+// caller in file order, so only that round's rows are held, whatever the file size.
+//
+// Everything after the third comma is the description, and fields may be
+// wrapped in double quotes ("" escapes a quote). Quoted fields cannot span lines.
+public class CsvBulkImporter {
+
+    public record RowError(long line, String message) {}
+
+    // Errors are capped at maxErrors. stoppedAtLine is the first line of the
+    // chunk the consumer refused, or 0 when the whole file was read; rows,
+    // rejected and errors cover only the chunks before it.
+    public record Parsed(long rows, long rejected, List<RowError> errors, long stoppedAtLine) {}
+
+    // Takes each chunk's rows in file order; returning false stops the parse
+    // there, and an exception stops it too
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        boolean accept(List<Expense> rows) throws IOException;
+    }
+
+    // stopped says why an import ended early, after the imported rows were
+    // already committed; null when the whole file was imported
+    public record Result(long imported, long rejected, List<RowError> errors, long elapsedMillis, String stopped) {}
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 8 << 20;
+
+    private final int maxErrors;
+    // Amounts may not have more significant decimals than the currency
+    private final int fractionDigits;
+
+    public CsvBulkImporter(int maxErrors, Currency currency) {
+        this.maxErrors = maxErrors;
+        this.fractionDigits = currency.getDefaultFractionDigits();
+    }
+
+    public Parsed parse(Path file, ChunkConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> ranges = split(channel, size);
+            int round = Runtime.getRuntime().availableProcessors();
+
+            // Chunks only know their own line counts; turn them into file line numbers
+            List<RowError> errors = new ArrayList<>();
+            long firstLine = 1;
+            long rows = 0;
+            long rejected = 0;
+            for (int from = 0; from < ranges.size(); from += round) {
+                List<ChunkResult> results;
+                try {
+                    results = ranges.subList(from, Math.min(from + round, ranges.size())).parallelStream()
+                            .map(range -> parseRange(channel, range[0], range[1], range[0] == 0))
+                            .collect(Collectors.toList());
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                for (ChunkResult result : results) {
+                    if (!consumer.accept(result.rows)) {
+                        return new Parsed(rows, rejected, errors, firstLine);
+                    }
+                    for (RowError error : result.errors) {
+                        if (errors.size() < maxErrors) {
+                            errors.add(new RowError(firstLine + error.line(), error.message()));
+                        }
+                    }
+                    firstLine += result.lines;
+                    rows += result.rows.size();
+                    rejected += result.rejected;
+                }
+            }
+            return new Parsed(rows, rejected, errors, 0);
+        }
+    }
+
+    // Splits the file into [start, end) ranges that each end just after a newline
+    private static List<long[]> split(FileChannel channel, long size) throws IOException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, size / (parallelism * 4L) + 1));
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            ranges.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return ranges;
+    }
+
+    private static final class ChunkResult {
+        final List<Expense> rows = new ArrayList<>();
+        final List<RowError> errors = new ArrayList<>();
+        long rejected;
+        long lines;
+    }
+
+    private ChunkResult parseRange(FileChannel channel, long start, long end, boolean firstChunk) {
+        ChunkResult result = new ChunkResult();
+        ByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            // Read the chunk instead, so its rows and line count still come out right
+            buffer = read(channel, start, end);
+        }
+        new RowParser(buffer, result, firstChunk).run();
+        return result;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long start, long end) {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("File shrank while importing, at byte " + (start + buffer.position()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.flip();
+    }
+
+    private final class RowParser {
+        private final ByteBuffer buffer;
+        private final ChunkResult result;
+        private final boolean firstChunk;
+        private final StringCache categories = new StringCache();
+        private byte[] scratch = new byte[256];
+        // Field bounds of the current line, rewritten for every row
+        private final int[] fieldStart = new int[4];
+        private final int[] fieldEnd = new int[4];
+        private final boolean[] fieldQuoted = new boolean[4];
+
+        RowParser(ByteBuffer buffer, ChunkResult result, boolean firstChunk) {
+            this.buffer = buffer;
+            this.result = result;
+            this.firstChunk = firstChunk;
+        }
+
+        void run() {
+            int limit = buffer.limit();
+            int pos = 0;
+            while (pos < limit) {
+                int lineEnd = pos;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > pos && buffer.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                long line = result.lines++;
+                if (contentEnd > pos && !(firstChunk && line == 0 && isHeader(pos, contentEnd))) {
+                    parseLine(pos, contentEnd, line);
+                }
+                pos = lineEnd + 1;
+            }
+        }
+
+        private boolean isHeader(int start, int end) {
+            byte[] header = "category".getBytes(StandardCharsets.US_ASCII);
+            int from = skipBom(start, end);
+            if (end - from < header.length) {
+                return false;
+            }
+            for (int i = 0; i < header.length; i++) {
+                if (Character.toLowerCase(buffer.get(from + i)) != header[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int skipBom(int start, int end) {
+            if (end - start >= 3 && buffer.get(start) == (byte) 0xEF
+                    && buffer.get(start + 1) == (byte) 0xBB && buffer.get(start + 2) == (byte) 0xBF) {
+                return start + 3;
+            }
+            return start;
+        }
+
+        private void parseLine(int start, int end, long line) {
+            String problem = splitFields(start, end);
+            if (problem != null) {
+                reject(line, problem);
+                return;
+            }
+            String category = fieldString(0, true);
+            if (category.isEmpty()) {
+                reject(line, "Missing category");
+                return;
+            }
+            long amount;
+            try {
+                amount = parseAmount(fieldStart[1], fieldEnd[1]);
+            } catch (NumberFormatException e) {
+                reject(line, "Invalid amount: " + rawField(1));
+                return;
+            }
+            LocalDate date;
+            try {
+                date = parseDate(fieldStart[2], fieldEnd[2]);
+            } catch (DateTimeException | NumberFormatException e) {
+                reject(line, "Invalid date: " + rawField(2));
+                return;
+            }
+            String description = fieldEnd[3] > fieldStart[3] ? fieldString(3, false) : "";
+            result.rows.add(new Expense(category, amount, date, description));
+        }
+
+        private void reject(long line, String message) {
+            result.rejected++;
+            if (result.errors.size() < maxErrors) {
+                result.errors.add(new RowError(line, message));
+            }
+        }
+
+        // Finds the trimmed bounds of the four fields; the last one runs to the end of the line
+        private String splitFields(int start, int end) {
+            int pos = skipBom(start, end);
+            for (int field = 0; field < 4; field++) {
+                while (pos < end && buffer.get(pos) == ' ') {
+                    pos++;
+                }
+                if (pos < end && buffer.get(pos) == '"') {
+                    int close = pos + 1;
+                    while (close < end) {
+                        if (buffer.get(close) == '"') {
+                            if (close + 1 < end && buffer.get(close + 1) == '"') {
+                                close += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        close++;
+                    }
+                    if (close >= end) {
+                        return "Unterminated quoted field";
+                    }
+                    fieldStart[field] = pos + 1;
+                    fieldEnd[field] = close;
+                    fieldQuoted[field] = true;
+                    pos = close + 1;
+                    while (pos < end && buffer.get(pos) == ' ') {
+                        pos++;
+                    }
+                    if (pos < end && (field == 3 || buffer.get(pos) != ',')) {
+                        return "Unexpected text after quoted field " + (field + 1);
+                    }
+                } else {
+                    int stop = pos;
+                    if (field < 3) {
+                        while (stop < end && buffer.get(stop) != ',') {
+                            stop++;
+                        }
+                    } else {
+                        stop = end;
+                    }
+                    int trimmed = stop;
+                    while (trimmed > pos && buffer.get(trimmed - 1) == ' ') {
+                        trimmed--;
+                    }
+                    fieldStart[field] = pos;
+                    fieldEnd[field] = trimmed;
+                    fieldQuoted[field] = false;
+                    pos = stop;
+                }
+                if (field < 3) {
+                    if (pos >= end) {
+                        if (field < 2) {
+                            return "Expected at least 3 fields";
+                        }
+                        fieldStart[3] = fieldEnd[3] = end;
+                        return null;
+                    }
+                    pos++; // comma
+                }
+            }
+            return null;
+        }
+
+        private String fieldString(int field, boolean intern) {
+            int length = copyField(field);
+            return intern ? categories.get(scratch, length) : new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        // Copies the field into scratch, undoing "" escapes in quoted fields
+        private int copyField(int field) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            if (scratch.length < to - from) {
+                scratch = new byte[Math.max(to - from, scratch.length * 2)];
+            }
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                byte b = buffer.get(i);
+                scratch[length++] = b;
+                if (b == '"' && fieldQuoted[field]) {
+                    i++;
+                }
+            }
+            return length;
+        }
+
+        private String rawField(int field) {
+            return new String(scratch, 0, copyField(field), StandardCharsets.UTF_8);
+        }
+
+        // Whole cents from a plain "[-]digits[.digits]" amount, exactly and without
+        // going through double. Decimals past the currency's own must be zeros,
+        // and amounts beyond Money.MAX_CENTS are rejected.
+        private long parseAmount(int start, int end) {
+            int pos = start;
+            boolean negative = false;
+            if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+            long cents = 0;
+            int digits = 0;
+            int decimals = -1;
+            for (; pos < end; pos++) {
+                byte b = buffer.get(pos);
+                if (b >= '0' && b <= '9') {
+                    digits++;
+                    if (decimals >= 0 && ++decimals > fractionDigits) {
+                        if (b != '0') {
+                            throw new NumberFormatException();
+                        }
+                        continue;
+                    }
+                    cents = cents * 10 + (b - '0');
+                    if (cents > Money.MAX_CENTS) {
+                        throw new NumberFormatException();
+                    }
+                } else if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    throw new NumberFormatException();
+                }
+            }
+            if (digits == 0) {
+                throw new NumberFormatException();
+            }
+            for (int i = Math.min(Math.max(decimals, 0), fractionDigits); i < Money.SCALE; i++) {
+                cents *= 10;
+            }
+            if (cents > Money.MAX_CENTS) {
+                throw new NumberFormatException();
+            }
+            return negative ? -cents : cents;
+        }
+
+        // ISO yyyy-MM-dd
+        private LocalDate parseDate(int start, int end) {
+            if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+                throw new NumberFormatException();
+            }
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            return LocalDate.of(year, month, day);
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException();
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+
+    // Maps UTF-8 byte sequences to shared String instances without allocating on a hit
+    private static final class StringCache {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        String get(byte[] bytes, int length) {
+            int mask = keys.length - 1;
+            int slot = hash(bytes, length) & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].length == length && Arrays.equals(keys[slot], 0, length, bytes, 0, length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            String value = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOf(bytes, length);
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = hash(oldKeys[i], oldKeys[i].length) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(byte[] bytes, int length) {
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
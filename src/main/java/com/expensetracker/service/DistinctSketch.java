@@ -0,0 +1,67 @@
+package com.expensetracker.service;
+
+// HyperLogLog distinct count (Flajolet et al.) over 64-bit hashes. Each hash
+// picks one of M registers by its top P bits and records the longest run of
+// leading zeros seen in the rest; the harmonic mean of the registers estimates
+// the count, with linear counting taking over while many registers are empty.
+// Two sketches merge by taking the larger of each register.
+//
+// With P = 11 it takes 2 KB and the standard error is 1.04 / sqrt(M), about
+// 2.3%. Registers are allocated on the first add. Not thread-safe; SketchIndex
+// guards it.
+final class DistinctSketch {
+    private static final int P = 11;
+    private static final int M = 1 << P;
+    static final double STANDARD_ERROR = 1.04 / Math.sqrt(M);
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private byte[] registers;
+
+    // The hash must be well mixed in every bit
+    void add(long hash) {
+        if (registers == null) {
+            registers = new byte[M];
+        }
+        int index = (int) (hash >>> (64 - P));
+        // The guard bit caps the run at 64 - P + 1
+        int rank = Long.numberOfLeadingZeros(hash << P | 1L << (P - 1)) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    void merge(DistinctSketch other) {
+        if (other.registers == null) {
+            return;
+        }
+        if (registers == null) {
+            registers = new byte[M];
+        }
+        for (int i = 0; i < M; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    long estimate() {
+        if (registers == null) {
+            return 0;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * M * M / sum;
+        if (estimate <= 2.5 * M && zeros > 0) {
+            estimate = M * Math.log((double) M / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    long estimatedBytes() {
+        return registers == null ? 16 : 32 + M;
+    }
+}
@@ -1,155 +1,773 @@
 package com.expensetracker.service;
 
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.metrics.Metrics;
+import com.expensetracker.model.AlertRule;
+import com.expensetracker.model.BatchOperation;
+import com.expensetracker.model.BatchResult;
 import com.expensetracker.model.Expense;
-import org.springframework.stereotype.Service;
-
+import com.expensetracker.model.Money;
+import com.expensetracker.model.QuerySpec;
+import com.expensetracker.store.CategoryDictionary;
+import com.expensetracker.store.ColumnarExpenseStore;
+import com.expensetracker.store.ConcurrentExpenseStore;
+import com.expensetracker.store.DateKey;
+import com.expensetracker.store.ExpenseStore;
+import com.expensetracker.store.OffHeapExpenseStore;
+import com.expensetracker.store.SearchIndex;
+import com.expensetracker.store.SnapshotStore;
+import com.expensetracker.store.WriteAheadLog;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
 
-@Service
+// One tenant's expenses: its own store, id space, aggregates, write lock and
+// log directory. Instances are created and closed by TenantRegistry.
 public class ExpenseService {
-    private final List<Expense> expenses = new ArrayList<>();
+    private static final int MAX_IMPORT_ERRORS = 100;
+
+    // Reads go straight to the store; writes are serialized so the store's
+    // indexes, the running aggregates and the category set change together.
+    private final ExpenseStore expenses;
+    private final SearchIndex search;
+    private final QueryEngine queries;
+    private final CategoryAggregates aggregates = new CategoryAggregates();
+    private final RollupIndex rollups = new RollupIndex();
+    private final SketchIndex sketches;
+    private final AlertEngine alerts;
+    // A j.u.c lock so writers running on virtual threads never pin a carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
     private final AtomicLong idGenerator = new AtomicLong(1);
-    private final Set<String> categories = new LinkedHashSet<>(Arrays.asList(
+    // Bumped after every completed write, once the store and all derived state
+    // reflect it; responses rendered at a version stay valid until it moves
+    private final AtomicLong version = new AtomicLong();
+    // Ids and categories changed since the live stream last looked
+    private final ChangeFeed changes = new ChangeFeed();
+    // Category names interned with a row count each; presets are always listed
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private static final List<String> PRESET_CATEGORIES = List.of(
         "Food", "Transport", "Entertainment", "Utilities", "Rent", "Other"
-    ));
+    );
+
+    private final ExpenseProperties properties;
+    private final ServiceMetrics metrics;
+    private final String tenant;
+    private final Path walDir;
+    // Only the default tenant starts from the seed file
+    private final Path seedFile;
+    private final long maxBytes;
+    // Estimated heap held by the stored rows; written under writeLock
+    private volatile long estimatedBytes;
+    // Null when the write-ahead log is disabled
+    private WriteAheadLog wal;
+    private SnapshotStore snapshots;
+    // Shared with other tenants unless this partition runs standalone
+    private final ScheduledExecutorService maintenance;
+    private ScheduledExecutorService ownScheduler;
+    private ScheduledFuture<?> snapshotTask;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private long recordsAtLastSnapshot;
 
-    public ExpenseService() {
-        loadSeedData();
+    // A standalone default partition with its own snapshot thread and metrics
+    public ExpenseService(ExpenseProperties properties) {
+        this(properties, TenantRegistry.DEFAULT_TENANT, null, new ServiceMetrics(new Metrics()));
+    }
+
+    ExpenseService(ExpenseProperties properties, String tenant, ScheduledExecutorService maintenance,
+                   ServiceMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.tenant = tenant;
+        this.maintenance = maintenance;
+        this.maxBytes = properties.getTenants().getMaxMemory().toBytes();
+        if (TenantRegistry.DEFAULT_TENANT.equals(tenant)) {
+            this.walDir = Paths.get(properties.getWal().getDir());
+            this.seedFile = Paths.get(properties.getSeedFile());
+        } else {
+            this.walDir = Paths.get(properties.getTenants().getDir(), tenant);
+            this.seedFile = null;
+        }
+        PRESET_CATEGORIES.forEach(categories::pin);
+        this.expenses = switch (properties.getStore().getType()) {
+            case COLUMNAR -> new ColumnarExpenseStore(categories);
+            case CONCURRENT -> new ConcurrentExpenseStore();
+            case OFF_HEAP -> new OffHeapExpenseStore(categories);
+        };
+        this.search = new SearchIndex(expenses);
+        this.sketches = new SketchIndex(search);
+        this.alerts = new AlertEngine(new AlertQueue(properties.getAlerts().getRetained()), metrics,
+                Clock.systemDefaultZone());
+        this.queries = new QueryEngine(expenses, search, rollups);
+        if (properties.getWal().isEnabled()) {
+            recover();
+        } else {
+            loadSeedData();
+        }
+        // Subscribers load the starting state themselves
+        changes.clear();
+        // Added once the data is loaded, so existing rows seed the windows without firing
+        for (AlertRule rule : properties.getAlerts().getRules()) {
+            String error = rule.validate(properties.getCurrency());
+            if (error != null) {
+                throw new IllegalArgumentException("Invalid rule in expense.alerts.rules: " + error);
+            }
+            alerts.addRule(rule, rollups);
+        }
     }
 
     // CRUD Operations
     public Expense addExpense(Expense expense) {
-        expense.setId(idGenerator.getAndIncrement());
-        expenses.add(expense);
-        categories.add(expense.getCategory());
-        return expense;
+        long started = System.nanoTime();
+        try {
+            checkQuota();
+            awaitDurable(insert(expense));
+            return expense;
+        } finally {
+            metrics.add.record(System.nanoTime() - started);
+        }
+    }
+
+    // Assigns an id, logs and applies the row; returns the log sequence number to wait on
+    private long insert(Expense expense) {
+        writeLock.lock();
+        try {
+            checkApplicable(expense);
+            expense.setId(idGenerator.getAndIncrement());
+            long seq = wal != null ? wal.appendAdd(expense) : 0;
+            applyPut(expense);
+            version.incrementAndGet();
+            return seq;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public List<Expense> getAllExpenses() {
-        return expenses.stream()
-                .sorted((a, b) -> b.getDate().compareTo(a.getDate()))
-                .collect(Collectors.toList());
+        return new ArrayList<>(expenses.byDateDescending());
+    }
+
+    // Keyset pagination over the date index: up to limit rows after the cursor
+    public List<Expense> getExpensesPage(DateKey after, int limit) {
+        long started = System.nanoTime();
+        try {
+            List<Expense> page = new ArrayList<>(Math.min(limit, 1024));
+            for (Expense expense : expenses.byDateDescending(after)) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(expense);
+            }
+            return page;
+        } finally {
+            metrics.page.record(System.nanoTime() - started);
+        }
+    }
+
+    // Live, weakly consistent view for streaming without copying the dataset
+    public Iterable<Expense> streamExpenses(DateKey after) {
+        return expenses.byDateDescending(after);
+    }
+
+    // Matching rows in date order, most recent first; see SearchIndex
+    public List<Expense> search(SearchIndex.Query query, int limit) {
+        long started = System.nanoTime();
+        try {
+            return search.search(query, limit);
+        } finally {
+            metrics.search.record(System.nanoTime() - started);
+        }
     }
 
     public Expense getExpenseById(Long id) {
-        return expenses.stream()
-                .filter(e -> e.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long started = System.nanoTime();
+        try {
+            return expenses.get(id);
+        } finally {
+            metrics.get.record(System.nanoTime() - started);
+        }
     }
 
     public Expense updateExpense(Long id, Expense updatedExpense) {
-        Expense expense = getExpenseById(id);
-        if (expense != null) {
-            expense.setCategory(updatedExpense.getCategory());
-            expense.setAmount(updatedExpense.getAmount());
-            expense.setDate(updatedExpense.getDate());
-            expense.setDescription(updatedExpense.getDescription());
-            categories.add(updatedExpense.getCategory());
+        long started = System.nanoTime();
+        try {
+            checkQuota();
+            Expense expense;
+            long seq;
+            writeLock.lock();
+            try {
+                if (expenses.get(id) == null) {
+                    return null;
+                }
+                // Stored rows are never mutated in place; readers either see the old or the new row
+                expense = new Expense(updatedExpense.getCategory(), updatedExpense.getAmountCents(),
+                        updatedExpense.getDate(), updatedExpense.getDescription());
+                expense.setId(id);
+                checkApplicable(expense);
+                seq = wal != null ? wal.appendUpdate(expense) : 0;
+                applyPut(expense);
+                version.incrementAndGet();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(seq);
             return expense;
+        } finally {
+            metrics.update.record(System.nanoTime() - started);
         }
-        return null;
     }
 
     public boolean deleteExpense(Long id) {
-        return expenses.removeIf(e -> e.getId().equals(id));
+        long started = System.nanoTime();
+        try {
+            long seq;
+            writeLock.lock();
+            try {
+                if (expenses.get(id) == null) {
+                    return false;
+                }
+                seq = wal != null ? wal.appendDelete(id) : 0;
+                applyDelete(id);
+                version.incrementAndGet();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(seq);
+            return true;
+        } finally {
+            metrics.delete.record(System.nanoTime() - started);
+        }
     }
 
-    // Statistics
-    public Double getTotalExpense() {
-        return expenses.stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
+    // Applies a whole-row write to the store and everything derived from it.
+    // Shared by live writes and log replay; callers hold writeLock.
+    private void applyPut(Expense expense) {
+        applyPut(expense, null);
     }
 
-    public Map<String, Double> getTotalByCategory() {
-        return expenses.stream()
-                .collect(Collectors.groupingBy(
-                        Expense::getCategory,
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    // With a delta, aggregate changes are collected and committed once by the caller
+    private void applyPut(Expense expense, CategoryAggregates.Delta delta) {
+        // Rows of a category share one String instead of each keeping the parsed copy
+        expense.setCategory(categories.decode(categories.acquire(expense.getCategory())));
+        Expense previous = expenses.put(expense);
+        if (previous != null) {
+            unaggregate(previous, delta);
+            search.remove(previous);
+            sketches.remove(previous.getCategory(), previous.getDate());
+            estimatedBytes -= expenses.estimateBytes(previous);
+        }
+        search.add(expense);
+        estimatedBytes += expenses.estimateBytes(expense);
+        if (delta != null) {
+            delta.add(expense.getCategory(), expense.getAmountCents());
+        } else {
+            aggregates.add(expense.getCategory(), expense.getAmountCents());
+        }
+        rollups.add(expense.getCategory(), expense.getDate(), expense.getAmountCents());
+        sketches.add(expense.getCategory(), expense.getDate(), expense.getAmountCents(), expense.getDescription());
+        if (previous != null) {
+            alerts.update(previous, expense);
+        } else {
+            alerts.add(expense);
+        }
+        changes.put(expense.getId(), expense.getCategory());
     }
 
+    // Everything applyPut can fail on, checked before the rows are logged: a
+    // logged record that cannot be applied would fail again on every restart
+    private void checkApplicable(Expense row) {
+        if (categories.idOf(requireCategory(row)) < 0) {
+            categories.checkRoom(1);
+        }
+    }
 
-    public Map<String, Object> getHighestCategory() {
-        Map<String, Double> byCategory = getTotalByCategory();
-        if (byCategory.isEmpty()) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("category", "N/A");
-            result.put("amount", 0.0);
-            return result;
+    private void checkApplicable(Collection<Expense> rows) {
+        Set<String> newCategories = new HashSet<>();
+        for (Expense row : rows) {
+            String category = requireCategory(row);
+            if (categories.idOf(category) < 0) {
+                newCategories.add(category);
+            }
         }
+        categories.checkRoom(newCategories.size());
+    }
 
-        Map.Entry<String, Double> highest = byCategory.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .orElse(null);
+    private static String requireCategory(Expense row) {
+        String category = row.getCategory();
+        if (category == null || category.isBlank()) {
+            throw new IllegalArgumentException("Category is required");
+        }
+        return category;
+    }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("category", highest.getKey());
-        result.put("amount", highest.getValue());
-        return result;
+    private void applyDelete(long id) {
+        applyDelete(id, null);
     }
 
-    public Map<String, Object> getLowestCategory() {
-        Map<String, Double> byCategory = getTotalByCategory();
-        if (byCategory.isEmpty()) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("category", "N/A");
-            result.put("amount", 0.0);
-            return result;
+    private void applyDelete(long id, CategoryAggregates.Delta delta) {
+        Expense removed = expenses.remove(id);
+        if (removed != null) {
+            unaggregate(removed, delta);
+            alerts.remove(removed);
+            search.remove(removed);
+            sketches.remove(removed.getCategory(), removed.getDate());
+            estimatedBytes -= expenses.estimateBytes(removed);
+            changes.delete(id, removed.getCategory());
+        }
+    }
+
+    private void unaggregate(Expense expense, CategoryAggregates.Delta delta) {
+        if (delta != null) {
+            delta.remove(expense.getCategory(), expense.getAmountCents());
+        } else {
+            aggregates.remove(expense.getCategory(), expense.getAmountCents());
+        }
+        rollups.remove(expense.getCategory(), expense.getDate(), expense.getAmountCents());
+        changes.touch(expense.getCategory());
+        categories.release(expense.getCategory());
+    }
+
+    // Checked before writes that can add data. The estimate is read without the
+    // lock, so concurrent writers may overshoot the limit by a few rows.
+    private void checkQuota() {
+        long used = getEstimatedBytes();
+        if (maxBytes > 0 && used >= maxBytes) {
+            throw new QuotaExceededException(tenant, used, maxBytes);
+        }
+    }
+
+    // Group commit happens outside writeLock so other writers can queue records
+    // into the same fsync while this one waits
+    private void awaitDurable(long seq) {
+        if (wal != null && seq > 0) {
+            wal.awaitDurable(seq);
+        }
+    }
+
+    // Validates every operation first and applies nothing if any is invalid. Valid
+    // batches are applied under one lock acquisition, logged as a single record
+    // with one fsync, and re-rank each touched category once.
+    public List<BatchResult> applyBatch(List<BatchOperation> operations) {
+        long started = System.nanoTime();
+        try {
+            List<BatchResult> invalid = new ArrayList<>();
+            Expense[] rows = new Expense[operations.size()];
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                String error = operation.validate(properties.getCurrency());
+                if (error != null) {
+                    invalid.add(new BatchResult(i, BatchResult.INVALID, operation.getId(), error));
+                } else if (!BatchOperation.DELETE.equals(operation.getOp())) {
+                    rows[i] = operation.toExpense();
+                }
+            }
+            if (!invalid.isEmpty()) {
+                return invalid;
+            }
+            if (Arrays.stream(rows).anyMatch(Objects::nonNull)) {
+                checkQuota();
+            }
+
+            List<BatchResult> results = new ArrayList<>(operations.size());
+            boolean[] apply = new boolean[operations.size()];
+            long seq = 0;
+            writeLock.lock();
+            try {
+                // First pass resolves ids and encodes the log record; the store is only
+                // touched once the record is appended, so a failed append changes nothing
+                checkApplicable(Arrays.stream(rows).filter(Objects::nonNull).toList());
+                WriteAheadLog.Batch logged = new WriteAheadLog.Batch();
+                Map<Long, Boolean> liveInBatch = new HashMap<>();
+                for (int i = 0; i < operations.size(); i++) {
+                    BatchOperation operation = operations.get(i);
+                    Expense row = rows[i];
+                    if (BatchOperation.ADD.equals(operation.getOp())) {
+                        row.setId(idGenerator.getAndIncrement());
+                        liveInBatch.put(row.getId(), true);
+                        logged.add(row);
+                        results.add(new BatchResult(i, BatchResult.CREATED, row.getId(), null));
+                        apply[i] = true;
+                        continue;
+                    }
+                    long id = operation.getId();
+                    Boolean live = liveInBatch.get(id);
+                    if (live == null ? expenses.get(id) == null : !live) {
+                        results.add(new BatchResult(i, BatchResult.NOT_FOUND, id, null));
+                        continue;
+                    }
+                    if (row != null) {
+                        row.setId(id);
+                        logged.update(row);
+                        results.add(new BatchResult(i, BatchResult.UPDATED, id, null));
+                    } else {
+                        liveInBatch.put(id, false);
+                        logged.delete(id);
+                        results.add(new BatchResult(i, BatchResult.DELETED, id, null));
+                    }
+                    apply[i] = true;
+                }
+                if (wal != null && !logged.isEmpty()) {
+                    seq = wal.append(logged);
+                }
+
+                CategoryAggregates.Delta delta = aggregates.newDelta();
+                for (int i = 0; i < operations.size(); i++) {
+                    if (!apply[i]) {
+                        continue;
+                    }
+                    if (rows[i] != null) {
+                        applyPut(rows[i], delta);
+                    } else {
+                        applyDelete(operations.get(i).getId(), delta);
+                    }
+                }
+                delta.commit();
+                version.incrementAndGet();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(seq);
+            return results;
+        } finally {
+            metrics.batch.record(System.nanoTime() - started);
+        }
+    }
+
+    // Everything that changed since the previous call, or null if nothing did. Taken
+    // under the write lock so the ids, totals and version describe the same state.
+    public ChangeSet drainChanges() {
+        writeLock.lock();
+        try {
+            return changes.isEmpty() ? null : changes.drain(version.get(), aggregates);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    // Rows plus their search index entries
+    public long getEstimatedBytes() {
+        return estimatedBytes + search.estimatedBytes();
+    }
+
+    // Zero when unlimited
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // Data version for response caching: unchanged means every read returns the same result
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Statistics - served from running aggregates, O(#categories) per call
+    public BigDecimal getTotalExpense() {
+        return Money.toDecimal(aggregates.getTotalCents());
+    }
+
+    // Display text for the total, e.g. "$1,234.50"
+    public String getFormattedTotal() {
+        return Money.format(aggregates.getTotalCents(), properties.getCurrency(), properties.getLocale());
+    }
+
+    public Currency getCurrency() {
+        return properties.getCurrency();
+    }
+
+    public long getExpenseCount() {
+        return aggregates.getCount();
+    }
+
+    public Map<String, BigDecimal> getTotalByCategory() {
+        return aggregates.getTotalByCategory();
+    }
+
+    // Day/month/year totals answered from the rollup index
+    public List<RollupIndex.TrendPoint> getTrend(RollupIndex.Granularity granularity, LocalDate from, LocalDate to,
+                                                 String category) {
+        return rollups.trend(granularity, from, to, category);
+    }
+
+    // Rules start from the current rollups and see every write after this one.
+    // The rule must have passed validate().
+    public AlertEngine.RuleStatus addAlertRule(AlertRule rule) {
+        writeLock.lock();
+        try {
+            return alerts.addRule(rule, rollups);
+        } finally {
+            writeLock.unlock();
         }
+    }
 
-        Map.Entry<String, Double> lowest = byCategory.entrySet().stream()
-                .min(Map.Entry.comparingByValue())
-                .orElse(null);
+    public boolean deleteAlertRule(long id) {
+        writeLock.lock();
+        try {
+            return alerts.removeRule(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
+    // Each with its total for the window containing today
+    public List<AlertEngine.RuleStatus> getAlertRules() {
+        writeLock.lock();
+        try {
+            return alerts.getRules();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public AlertQueue getAlerts() {
+        return alerts.getQueue();
+    }
+
+    // Amount percentiles and distinct description words per category, merged from
+    // monthly sketches. Stale months are rebuilt without blocking writes.
+    public SketchIndex.Report getDistribution(YearMonth from, YearMonth to, String category) {
+        return sketches.report(from, to, category);
+    }
+
+    // Ad-hoc filtered, grouped aggregates; see QueryEngine
+    public QueryEngine.Result query(QuerySpec spec) {
+        long started = System.nanoTime();
+        try {
+            return queries.execute(spec);
+        } finally {
+            metrics.query.record(System.nanoTime() - started);
+        }
+    }
+
+    public Map<String, Object> getHighestCategory() {
+        return toCategoryResult(aggregates.getHighest());
+    }
+
+    public Map<String, Object> getLowestCategory() {
+        return toCategoryResult(aggregates.getLowest());
+    }
+
+    private Map<String, Object> toCategoryResult(CategoryAggregates.CategoryTotal categoryTotal) {
         Map<String, Object> result = new HashMap<>();
-        result.put("category", lowest.getKey());
-        result.put("amount", lowest.getValue());
+        if (categoryTotal == null) {
+            result.put("category", "N/A");
+            result.put("amount", Money.toDecimal(0));
+        } else {
+            result.put("category", categoryTotal.category());
+            result.put("amount", categoryTotal.sum());
+        }
         return result;
     }
 
-    public Set<String> getCategories() {
-        return new LinkedHashSet<>(categories);
+    // Presets plus every category that has expenses, from the dictionary's counts
+    public List<String> getCategories() {
+        return categories.names();
     }
 
-    private void loadSeedData() {
+    // Durability
+
+    private void recover() {
+        wal = new WriteAheadLog(walDir, properties.getWal().isSyncWrites());
+        snapshots = new SnapshotStore(walDir);
+        long[] skipped = new long[1];
+        WriteAheadLog.Replayer replayer = new WriteAheadLog.Replayer() {
+            // A row that cannot be applied (logged before writes were checked, or
+            // beyond a limit lowered since) is reported and left out, so the
+            // rest of the log still loads
+            @Override
+            public void put(Expense expense) {
+                idGenerator.accumulateAndGet(expense.getId() + 1, Math::max);
+                try {
+                    checkApplicable(expense);
+                    applyPut(expense);
+                } catch (RuntimeException e) {
+                    if (skipped[0]++ == 0) {
+                        System.out.println("Skipping expense " + expense.getId() + " in " + walDir
+                                + " that cannot be applied: " + e.getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void delete(long id) {
+                applyDelete(id);
+            }
+        };
+        try {
+            long replayed;
+            SnapshotStore.Info snapshot;
+            writeLock.lock();
+            try {
+                snapshot = snapshots.loadLatest(replayer::put);
+                if (snapshot != null) {
+                    idGenerator.accumulateAndGet(snapshot.nextId(), Math::max);
+                }
+                replayed = wal.replay(snapshot != null ? snapshot.segment() : 0, replayer);
+            } finally {
+                writeLock.unlock();
+            }
+            wal.open();
+            if (snapshot == null && replayed == 0) {
+                loadSeedData();
+            } else {
+                System.out.println("Recovered " + expenses.size() + " expenses from " + walDir
+                        + " (" + replayed + " log records replayed)");
+            }
+            if (skipped[0] > 0) {
+                System.out.println("Skipped " + skipped[0] + " logged rows in " + walDir + " that could not be applied");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover expenses from " + walDir, e);
+        }
+
+        long intervalMillis = properties.getSnapshot().getInterval().toMillis();
+        ScheduledExecutorService scheduler = maintenance;
+        if (scheduler == null) {
+            ownScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "expense-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler = ownScheduler;
+        }
+        snapshotTask = scheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            if (wal.appendedCount() - recordsAtLastSnapshot >= properties.getSnapshot().getMinRecords()) {
+                snapshot();
+            }
+        } catch (Exception e) {
+            System.out.println("Snapshot of tenant " + tenant + " failed: " + e.getMessage());
+        }
+    }
+
+    // Writes a compacted snapshot and drops the log segments it covers
+    public void snapshot() throws IOException {
+        if (wal == null) {
+            return;
+        }
+        snapshotLock.lock();
         try {
-            java.io.File seedFile = new java.io.File("data/expenses.csv");
-            if (seedFile.exists()) {
-                try (java.io.BufferedReader br = new java.io.BufferedReader(new java.io.FileReader(seedFile))) {
-                    String line;
-                    boolean firstLine = true;
-                    while ((line = br.readLine()) != null) {
-                        if (firstLine) {
-                            firstLine = false;
-                            continue;
-                        }
-                        String[] parts = line.split(",");
-                        if (parts.length >= 3) {
-                            try {
-                                String category = parts[0].trim();
-                                Double amount = Double.parseDouble(parts[1].trim());
-                                LocalDate date = LocalDate.parse(parts[2].trim());
-                                String description = parts.length >= 4 ? parts[3].trim() : "";
-                                Expense expense = new Expense(category, amount, date, description);
-                                expense.setId(idGenerator.getAndIncrement());
-                                expenses.add(expense);
-                                categories.add(category);
-                            } catch (Exception e) {
-                                // Skip invalid lines
-                            }
-                        }
+            long segment;
+            long nextId;
+            long records;
+            writeLock.lock();
+            try {
+                // Every record in the sealed segments is already applied to the store
+                segment = wal.rotate();
+                nextId = idGenerator.get();
+                records = wal.appendedCount();
+            } finally {
+                writeLock.unlock();
+            }
+            snapshots.write(segment, nextId, expenses.byDateDescending());
+            snapshots.deleteBefore(segment);
+            wal.deleteSegmentsBefore(segment);
+            recordsAtLastSnapshot = records;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        if (wal == null) {
+            return;
+        }
+        snapshotTask.cancel(false);
+        if (ownScheduler != null) {
+            ownScheduler.shutdownNow();
+        }
+        if (wal.appendedCount() > recordsAtLastSnapshot) {
+            snapshot();
+        }
+        wal.close();
+    }
+
+    // Bulk import. Parsing runs in parallel without holding any lock; rows are then
+    // applied chunk by chunk in file order, waiting for each chunk's log records so
+    // the log buffer never holds more than one chunk.
+    public CsvBulkImporter.Result importCsv(Path file) throws IOException {
+        long started = System.nanoTime();
+        try {
+            CsvBulkImporter importer = new CsvBulkImporter(MAX_IMPORT_ERRORS, properties.getCurrency());
+            // Each chunk is applied and made durable as it is parsed. An import
+            // that reaches the memory limit stops before the next chunk and is
+            // not rolled back: the result counts the rows kept and says where
+            // it stopped, so the rest can be sent again on its own.
+            QuotaExceededException[] exceeded = new QuotaExceededException[1];
+            CsvBulkImporter.Parsed parsed = importer.parse(file, chunk -> {
+                try {
+                    checkQuota();
+                } catch (QuotaExceededException e) {
+                    exceeded[0] = e;
+                    return false;
+                }
+                long seq = 0;
+                writeLock.lock();
+                try {
+                    for (Expense expense : chunk) {
+                        seq = insert(expense);
                     }
-                    System.out.println("Loaded " + expenses.size() + " expenses from seed data");
+                } finally {
+                    writeLock.unlock();
                 }
+                awaitDurable(seq);
+                metrics.importedRows.add(chunk.size());
+                return true;
+            });
+            metrics.rejectedRows.add(parsed.rejected());
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            String stopped = exceeded[0] == null ? null : "Stopped at line " + parsed.stoppedAtLine() + ": "
+                    + exceeded[0].getMessage() + "; rows before that line stay imported";
+            return new CsvBulkImporter.Result(parsed.rows(), parsed.rejected(), parsed.errors(), elapsedMillis,
+                    stopped);
+        } finally {
+            metrics.importCsv.record(System.nanoTime() - started);
+        }
+    }
+
+    // Resolves a file name inside expense.import-dir, refusing paths that escape it
+    public Path resolveImportFile(String name) {
+        Path dir = Paths.get(properties.getImportDir()).toAbsolutePath().normalize();
+        Path file = dir.resolve(name).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No such file in import directory: " + name);
+        }
+        return file;
+    }
+
+    private void loadSeedData() {
+        if (seedFile == null || !Files.exists(seedFile)) {
+            return;
+        }
+        try {
+            CsvBulkImporter.Result result = importCsv(seedFile);
+            System.out.println("Loaded " + result.imported() + " expenses from seed data");
+            if (result.stopped() != null) {
+                System.out.println("Seed data: " + result.stopped());
+            }
+            if (result.rejected() > 0) {
+                System.out.println("Skipped " + result.rejected() + " invalid seed rows, first: " + result.errors().get(0));
             }
         } catch (Exception e) {
             System.out.println("Could not load seed data: " + e.getMessage());
         }
     }
 }
-
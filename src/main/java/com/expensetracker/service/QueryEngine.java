@@ -0,0 +1,296 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.Money;
+import com.expensetracker.model.QuerySpec;
+import com.expensetracker.store.ExpenseStore;
+import com.expensetracker.store.SearchIndex;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.StreamSupport;
+
+// Runs POST /api/query specs against one tenant's expenses, answering each the
+// cheapest way its shape allows:
+//  - rollup: sum/count/avg with only category and date filters are read from
+//    RollupIndex buckets without touching a row
+//  - index: a selective description, category or amount filter walks the
+//    matching rows found by SearchIndex
+//  - scan: one fused pass over the store computes every aggregate of every
+//    group at once, split over the fork-join pool for large datasets. Without
+//    description terms the pass reads amounts, dates and categories straight
+//    from the store (ExpenseStore.scan) instead of building a row per expense.
+public class QueryEngine {
+    private static final int PARALLEL_THRESHOLD = 50_000;
+    // Walk the search index when it narrows the rows to under an eighth
+    private static final int INDEX_FRACTION = 8;
+    private static final Set<String> ROLLUP_AGGREGATES = Set.of("sum", "count", "avg");
+
+    // plan is "rollup", "index", "scan" or "parallel-scan"
+    public record Result(String plan, List<Map<String, Object>> groups) {}
+
+    private final ExpenseStore rows;
+    private final SearchIndex search;
+    private final RollupIndex rollups;
+
+    QueryEngine(ExpenseStore rows, SearchIndex search, RollupIndex rollups) {
+        this.rows = rows;
+        this.search = search;
+        this.rollups = rollups;
+    }
+
+    // The spec must have passed validate()
+    public Result execute(QuerySpec spec) {
+        List<String> groupBy = spec.getGroupBy();
+        List<String> aggregates = spec.getAggregates();
+        boolean percentiles = aggregates.stream().anyMatch(a -> !Double.isNaN(QuerySpec.percentile(a)));
+        String category = spec.getCategory() != null && !spec.getCategory().isEmpty() ? spec.getCategory() : null;
+        SearchIndex.Query filter = new SearchIndex.Query(SearchIndex.tokenize(spec.getQ()), category,
+                spec.minCents(), spec.maxCents(), spec.fromDate(), spec.toDate(), null);
+        boolean amountFilter = filter.minCents() != null || filter.maxCents() != null;
+
+        Map<List<Object>, Accumulator> groups;
+        String plan;
+        if (filter.terms().isEmpty() && !amountFilter && ROLLUP_AGGREGATES.containsAll(aggregates)) {
+            groups = fromRollups(filter, groupBy);
+            plan = "rollup";
+        } else if ((!filter.terms().isEmpty() || category != null || amountFilter)
+                && search.estimate(filter) * INDEX_FRACTION < rows.size()) {
+            Map<List<Object>, Accumulator> matched = new HashMap<>();
+            search.forEach(filter, row -> accumulate(matched, row, groupBy, percentiles));
+            groups = matched;
+            plan = "index";
+        } else {
+            boolean parallel = rows.size() >= PARALLEL_THRESHOLD;
+            if (filter.terms().isEmpty()) {
+                groups = scan(filter, groupBy, percentiles, parallel);
+            } else {
+                groups = StreamSupport.stream(rows.byDateDescending().spliterator(), parallel)
+                        .filter(row -> SearchIndex.matches(row, filter))
+                        .collect(HashMap::new, (map, row) -> accumulate(map, row, groupBy, percentiles),
+                                QueryEngine::merge);
+            }
+            plan = parallel ? "parallel-scan" : "scan";
+        }
+        return new Result(plan, render(groups, groupBy, aggregates));
+    }
+
+    private Map<List<Object>, Accumulator> fromRollups(SearchIndex.Query filter, List<String> groupBy) {
+        RollupIndex.Granularity granularity = groupBy.contains(QuerySpec.WEEKDAY) ? RollupIndex.Granularity.DAY
+                : groupBy.contains(QuerySpec.MONTH) ? RollupIndex.Granularity.MONTH : RollupIndex.Granularity.YEAR;
+        Collection<String> categories = filter.category() != null ? List.of(filter.category())
+                : groupBy.contains(QuerySpec.CATEGORY) ? List.copyOf(rollups.categories())
+                : Collections.singletonList(null);
+        Map<List<Object>, Accumulator> groups = new HashMap<>();
+        for (String category : categories) {
+            for (RollupIndex.TrendPoint point : rollups.trend(granularity, filter.from(), filter.to(), category)) {
+                LocalDate date = switch (granularity) {
+                    case DAY -> LocalDate.parse(point.period());
+                    case MONTH -> YearMonth.parse(point.period()).atDay(1);
+                    case YEAR -> null;
+                };
+                groups.computeIfAbsent(key(groupBy, category, date), k -> new Accumulator(false))
+                        .add(point.totalCents(), point.count());
+            }
+        }
+        return groups;
+    }
+
+    private Map<List<Object>, Accumulator> scan(SearchIndex.Query filter, List<String> groupBy, boolean percentiles,
+                                                boolean parallel) {
+        int slices = parallel ? ForkJoinPool.getCommonPoolParallelism() * 4 : 1;
+        List<Slice> visitors = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            visitors.add(new Slice(filter, groupBy, percentiles));
+        }
+        rows.scan(visitors);
+        Map<List<Object>, Accumulator> groups = visitors.get(0).groups;
+        for (int i = 1; i < slices; i++) {
+            merge(groups, visitors.get(i).groups);
+        }
+        return groups;
+    }
+
+    // The groups of one slice of a store scan
+    private static final class Slice implements ExpenseStore.RowVisitor {
+        final Map<List<Object>, Accumulator> groups = new HashMap<>();
+        private final SearchIndex.Query filter;
+        private final List<String> groupBy;
+        private final boolean percentiles;
+        // A date is only built for rows grouped by month or weekday
+        private final boolean byDate;
+
+        Slice(SearchIndex.Query filter, List<String> groupBy, boolean percentiles) {
+            this.filter = filter;
+            this.groupBy = groupBy;
+            this.percentiles = percentiles;
+            this.byDate = groupBy.contains(QuerySpec.MONTH) || groupBy.contains(QuerySpec.WEEKDAY);
+        }
+
+        @Override
+        public void visit(long amountCents, int epochDay, String category) {
+            if (SearchIndex.matches(amountCents, epochDay, category, filter)) {
+                LocalDate date = byDate ? LocalDate.ofEpochDay(epochDay) : null;
+                groups.computeIfAbsent(key(groupBy, category, date), k -> new Accumulator(percentiles))
+                        .add(amountCents);
+            }
+        }
+    }
+
+    private static void accumulate(Map<List<Object>, Accumulator> groups, Expense row, List<String> groupBy,
+                                   boolean percentiles) {
+        groups.computeIfAbsent(key(groupBy, row.getCategory(), row.getDate()), k -> new Accumulator(percentiles))
+                .add(row.getAmountCents());
+    }
+
+    private static void merge(Map<List<Object>, Accumulator> into, Map<List<Object>, Accumulator> from) {
+        from.forEach((key, accumulator) -> into.merge(key, accumulator, Accumulator::merge));
+    }
+
+    // Group key components in groupBy order: category name, YearMonth, DayOfWeek
+    private static List<Object> key(List<String> groupBy, String category, LocalDate date) {
+        if (groupBy.isEmpty()) {
+            return List.of();
+        }
+        Object[] parts = new Object[groupBy.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = switch (groupBy.get(i)) {
+                case QuerySpec.CATEGORY -> category;
+                case QuerySpec.MONTH -> YearMonth.from(date);
+                default -> date.getDayOfWeek();
+            };
+        }
+        return Arrays.asList(parts);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(List<Object> a, List<Object> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int order = ((Comparable) a.get(i)).compareTo(b.get(i));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    // One map per group, keys first, then aggregates in the order asked for.
+    // Without groupBy there is always exactly one group, even over no rows.
+    private static List<Map<String, Object>> render(Map<List<Object>, Accumulator> groups, List<String> groupBy,
+                                                    List<String> aggregates) {
+        if (groupBy.isEmpty() && groups.isEmpty()) {
+            groups = Map.of(List.of(), new Accumulator(false));
+        }
+        List<List<Object>> keys = new ArrayList<>(groups.keySet());
+        keys.sort(QueryEngine::compareKeys);
+        List<Map<String, Object>> rendered = new ArrayList<>(keys.size());
+        for (List<Object> key : keys) {
+            Accumulator accumulator = groups.get(key);
+            accumulator.sortValues();
+            Map<String, Object> group = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                group.put(groupBy.get(i), key.get(i).toString());
+            }
+            for (String aggregate : aggregates) {
+                group.put(aggregate, accumulator.value(aggregate));
+            }
+            rendered.add(group);
+        }
+        return rendered;
+    }
+
+    // Sums, extremes and kept values are in cents; results are decimals
+    private static final class Accumulator {
+        private long sum;
+        private long count;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        // Every amount, kept only when a percentile was asked for
+        private long[] values;
+        private int size;
+
+        Accumulator(boolean keepValues) {
+            this.values = keepValues ? new long[16] : null;
+        }
+
+        void add(long cents) {
+            sum = Math.addExact(sum, cents);
+            count++;
+            min = Math.min(min, cents);
+            max = Math.max(max, cents);
+            if (values != null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = cents;
+            }
+        }
+
+        // A pre-aggregated bucket; only sum, count and avg are meaningful afterwards
+        void add(long totalCents, long rows) {
+            sum = Math.addExact(sum, totalCents);
+            count += rows;
+        }
+
+        Accumulator merge(Accumulator other) {
+            sum = Math.addExact(sum, other.sum);
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (values != null) {
+                if (size + other.size > values.length) {
+                    values = Arrays.copyOf(values, size + other.size);
+                }
+                System.arraycopy(other.values, 0, values, size, other.size);
+                size += other.size;
+            }
+            return this;
+        }
+
+        void sortValues() {
+            if (values != null) {
+                Arrays.sort(values, 0, size);
+            }
+        }
+
+        // Empty groups have no average, extremes or percentiles. Averages and
+        // interpolated percentiles are rounded half-even to the cent.
+        Object value(String aggregate) {
+            switch (aggregate) {
+                case "sum":
+                    return Money.toDecimal(sum);
+                case "count":
+                    return count;
+                case "avg":
+                    return count > 0 ? Money.toDecimal(sum).divide(BigDecimal.valueOf(count), RoundingMode.HALF_EVEN)
+                            : null;
+                case "min":
+                    return count > 0 ? Money.toDecimal(min) : null;
+                case "max":
+                    return count > 0 ? Money.toDecimal(max) : null;
+                default:
+                    return size > 0 ? Money.toDecimal(percentile(QuerySpec.percentile(aggregate))) : null;
+            }
+        }
+
+        // Linear interpolation between the closest ranks
+        private long percentile(double p) {
+            double rank = p / 100 * (size - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = Math.min(size - 1, lower + 1);
+            return (long) Math.rint(values[lower] + (rank - lower) * (values[upper] - values[lower]));
+        }
+    }
+}
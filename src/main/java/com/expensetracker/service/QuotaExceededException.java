@@ -0,0 +1,30 @@
+package com.expensetracker.service;
+
+// Thrown when a write would grow a tenant past expense.tenants.max-memory.
+// Deletes are always allowed, so a tenant can free space again.
+public class QuotaExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String tenant;
+    private final long usedBytes;
+    private final long maxBytes;
+
+    public QuotaExceededException(String tenant, long usedBytes, long maxBytes) {
+        super("Tenant '" + tenant + "' is over its memory limit (" + usedBytes + " of " + maxBytes + " bytes used)");
+        this.tenant = tenant;
+        this.usedBytes = usedBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
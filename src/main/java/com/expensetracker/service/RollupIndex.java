@@ -0,0 +1,185 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+// Pre-aggregated day, month and year buckets, kept for every category and for
+// all expenses together. Updated by ExpenseService on each write (under its
+// write lock) so trend queries only read a handful of buckets: whole months
+// and years inside the requested range come from their own rollup, and only
+// the partially covered edges fall back to finer buckets.
+public class RollupIndex {
+
+    public enum Granularity { DAY, MONTH, YEAR }
+
+    // Totals are exact cents
+    public record Bucket(long totalCents, long count) {}
+
+    // Serialized as {"period", "total" (decimal), "count"}
+    public record TrendPoint(String period, @JsonIgnore long totalCents, long count) {
+        @JsonProperty("total")
+        public BigDecimal total() {
+            return Money.toDecimal(totalCents);
+        }
+    }
+
+    // Bucket keys: epoch day, year * 12 + month - 1, and year
+    private static final class Levels {
+        final ConcurrentSkipListMap<Long, Bucket> days = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, Bucket> months = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, Bucket> years = new ConcurrentSkipListMap<>();
+
+        void apply(LocalDate date, long amount, long count) {
+            update(days, date.toEpochDay(), amount, count);
+            update(months, monthKey(date), amount, count);
+            update(years, date.getYear(), amount, count);
+        }
+
+        boolean isEmpty() {
+            return years.isEmpty();
+        }
+    }
+
+    private final Levels all = new Levels();
+    private final Map<String, Levels> byCategory = new ConcurrentHashMap<>();
+
+    public void add(String category, LocalDate date, long cents) {
+        apply(category, date, cents, 1);
+    }
+
+    public void remove(String category, LocalDate date, long cents) {
+        apply(category, date, -cents, -1);
+    }
+
+    private void apply(String category, LocalDate date, long amount, long count) {
+        all.apply(date, amount, count);
+        Levels levels = byCategory.computeIfAbsent(category, c -> new Levels());
+        levels.apply(date, amount, count);
+        if (levels.isEmpty()) {
+            byCategory.remove(category);
+        }
+    }
+
+    private static void update(ConcurrentSkipListMap<Long, Bucket> buckets, long key, long amount, long count) {
+        Bucket previous = buckets.get(key);
+        long rows = count + (previous != null ? previous.count() : 0);
+        if (rows <= 0) {
+            buckets.remove(key);
+        } else {
+            buckets.put(key, new Bucket(Math.addExact(amount, previous != null ? previous.totalCents() : 0), rows));
+        }
+    }
+
+    // Categories that currently have at least one expense
+    public Set<String> categories() {
+        return byCategory.keySet();
+    }
+
+    // Every bucket at one granularity, optionally for a single category, keyed by
+    // epoch day, year * 12 + month - 1 or year
+    public void forEachBucket(Granularity granularity, String category, BiConsumer<Long, Bucket> action) {
+        Levels levels = category == null ? all : byCategory.get(category);
+        if (levels == null) {
+            return;
+        }
+        switch (granularity) {
+            case DAY -> levels.days.forEach(action);
+            case MONTH -> levels.months.forEach(action);
+            case YEAR -> levels.years.forEach(action);
+        }
+    }
+
+    // Totals per bucket between from and to inclusive (either may be null for an
+    // open end), optionally for a single category, oldest first
+    public List<TrendPoint> trend(Granularity granularity, LocalDate from, LocalDate to, String category) {
+        Levels levels = category == null ? all : byCategory.get(category);
+        List<TrendPoint> points = new ArrayList<>();
+        Map.Entry<Long, Bucket> firstDay = levels != null ? levels.days.firstEntry() : null;
+        Map.Entry<Long, Bucket> lastDay = levels != null ? levels.days.lastEntry() : null;
+        if (firstDay == null || lastDay == null) {
+            return points;
+        }
+        LocalDate start = from != null ? from : LocalDate.ofEpochDay(firstDay.getKey());
+        LocalDate end = to != null ? to : LocalDate.ofEpochDay(lastDay.getKey());
+        if (start.isAfter(end)) {
+            return points;
+        }
+        switch (granularity) {
+            case DAY -> levels.days.subMap(start.toEpochDay(), true, end.toEpochDay(), true)
+                    .forEach((day, bucket) -> points.add(
+                            new TrendPoint(LocalDate.ofEpochDay(day).toString(), bucket.totalCents(), bucket.count())));
+            case MONTH -> levels.months.subMap(monthKey(start), true, monthKey(end), true)
+                    .forEach((month, bucket) -> {
+                        YearMonth yearMonth = YearMonth.of((int) Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+                        Bucket covered = clip(levels, bucket, yearMonth.atDay(1), yearMonth.atEndOfMonth(), start, end);
+                        addPoint(points, yearMonth.toString(), covered);
+                    });
+            case YEAR -> levels.years.subMap((long) start.getYear(), true, (long) end.getYear(), true)
+                    .forEach((year, bucket) -> {
+                        LocalDate first = LocalDate.of(year.intValue(), 1, 1);
+                        Bucket covered = clip(levels, bucket, first, first.withDayOfYear(first.lengthOfYear()), start, end);
+                        addPoint(points, String.valueOf(year), covered);
+                    });
+        }
+        return points;
+    }
+
+    private static void addPoint(List<TrendPoint> points, String period, Bucket bucket) {
+        if (bucket.count() > 0) {
+            points.add(new TrendPoint(period, bucket.totalCents(), bucket.count()));
+        }
+    }
+
+    // The part of a month or year bucket spanning [bucketStart, bucketEnd] that falls inside [start, end]
+    private static Bucket clip(Levels levels, Bucket bucket, LocalDate bucketStart, LocalDate bucketEnd,
+                               LocalDate start, LocalDate end) {
+        if (!bucketStart.isBefore(start) && !bucketEnd.isAfter(end)) {
+            return bucket;
+        }
+        LocalDate from = bucketStart.isBefore(start) ? start : bucketStart;
+        LocalDate to = bucketEnd.isAfter(end) ? end : bucketEnd;
+        return sum(levels, from, to);
+    }
+
+    // Sums [from, to] using whole-month buckets where possible and day buckets at the edges
+    private static Bucket sum(Levels levels, LocalDate from, LocalDate to) {
+        long total = 0;
+        long count = 0;
+        LocalDate cursor = from;
+        while (!cursor.isAfter(to)) {
+            YearMonth month = YearMonth.from(cursor);
+            LocalDate monthEnd = month.atEndOfMonth();
+            if (cursor.getDayOfMonth() == 1 && !monthEnd.isAfter(to)) {
+                Bucket bucket = levels.months.get(monthKey(cursor));
+                if (bucket != null) {
+                    total = Math.addExact(total, bucket.totalCents());
+                    count += bucket.count();
+                }
+            } else {
+                LocalDate last = monthEnd.isAfter(to) ? to : monthEnd;
+                for (Bucket bucket : levels.days.subMap(cursor.toEpochDay(), true, last.toEpochDay(), true).values()) {
+                    total = Math.addExact(total, bucket.totalCents());
+                    count += bucket.count();
+                }
+            }
+            cursor = monthEnd.plusDays(1);
+        }
+        return new Bucket(total, count);
+    }
+
+    private static long monthKey(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+}
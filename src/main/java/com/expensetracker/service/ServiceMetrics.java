@@ -0,0 +1,50 @@
+package com.expensetracker.service;
+
+import com.expensetracker.metrics.LatencyHistogram;
+import com.expensetracker.metrics.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Timers for ExpenseService operations, looked up once and shared by every
+// tenant so the number of series does not grow with the tenant count
+final class ServiceMetrics {
+    final LatencyHistogram add;
+    final LatencyHistogram update;
+    final LatencyHistogram delete;
+    final LatencyHistogram batch;
+    final LatencyHistogram get;
+    final LatencyHistogram page;
+    final LatencyHistogram search;
+    final LatencyHistogram query;
+    // A whole CSV load: parsing plus applying and logging every row
+    final LatencyHistogram importCsv;
+    final LongAdder importedRows;
+    final LongAdder rejectedRows;
+    // Checking a write against its alert rules, recorded only when it has any
+    final LatencyHistogram alertEvaluation;
+    final LongAdder alertsFired;
+
+    ServiceMetrics(Metrics metrics) {
+        add = timer(metrics, "add");
+        update = timer(metrics, "update");
+        delete = timer(metrics, "delete");
+        batch = timer(metrics, "batch");
+        get = timer(metrics, "get");
+        page = timer(metrics, "page");
+        search = timer(metrics, "search");
+        query = timer(metrics, "query");
+        importCsv = timer(metrics, "import");
+        String rows = "expense_import_rows_total";
+        String help = "CSV rows imported or rejected, seed data included";
+        importedRows = metrics.counter(rows, help, Metrics.labels("result", "imported"));
+        rejectedRows = metrics.counter(rows, help, Metrics.labels("result", "rejected"));
+        alertEvaluation = metrics.timer("expense_alert_evaluation",
+                "Time to check one written row against the alert rules for its category", "");
+        alertsFired = metrics.counter("expense_alerts_total", "Budget and threshold alerts fired, all tenants", "");
+    }
+
+    private static LatencyHistogram timer(Metrics metrics, String op) {
+        return metrics.timer("expense_service_op", "Time spent in each ExpenseService operation, all tenants",
+                Metrics.labels("op", op));
+    }
+}
@@ -0,0 +1,255 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Money;
+import com.expensetracker.store.SearchIndex;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Amount quantiles and distinct description words per category and month, kept
+// up to date by ExpenseService on each write (under its write lock) so
+// distribution statistics never sort or rescan the expenses. Each month of a
+// category holds a QuantileSketch of its amounts and a DistinctSketch of the
+// words in its descriptions (the closest thing to merchants the rows have); a
+// report merges the months in range. A month takes at most about 12 KB however
+// many rows it has.
+//
+// Sketches cannot forget a value, so deleting or replacing a row only marks its
+// month stale, and the next report rebuilds that month from the search index,
+// reading just that category's rows for the month.
+//
+// The index has its own lock, and a report reads the search index without it,
+// so writes carry on while stale months are rebuilt. Writers must update the
+// search index before calling add or remove. A month written to during its
+// rebuild keeps its old cell and stays stale; the report uses the rebuilt one.
+public class SketchIndex {
+
+    // Amounts are decimals; null percentiles mean no rows
+    public record Summary(String category, long count, BigDecimal min, BigDecimal p50, BigDecimal p90,
+                          BigDecimal p99, BigDecimal max, long distinctWords) {}
+
+    // Months as YYYY-MM (null for an open end). rankError bounds how far a
+    // percentile's rank may be off, as a fraction of the count; distinctError is
+    // the relative standard error of distinctWords.
+    public record Report(String from, String to, double rankError, double distinctError, long sketchBytes,
+                         Summary all, List<Summary> categories) {}
+
+    private static final class Cell {
+        final QuantileSketch amounts = new QuantileSketch();
+        final DistinctSketch words = new DistinctSketch();
+        boolean stale;
+        // Adds and removes so far, to tell whether a rebuild raced a write
+        long writes;
+
+        void add(long cents, String description) {
+            amounts.add(cents);
+            addWords(description, words);
+            writes++;
+        }
+
+        void merge(Cell other) {
+            amounts.merge(other.amounts);
+            words.merge(other.words);
+        }
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // A stale month as it was when its rebuild started
+    private record Stale(String category, long month, Cell cell, long writes) {}
+
+    private final SearchIndex search;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Category -> month key (year * 12 + month - 1) -> sketches, both in order
+    private final Map<String, TreeMap<Long, Cell>> cells = new TreeMap<>();
+
+    SketchIndex(SearchIndex search) {
+        this.search = search;
+    }
+
+    public void add(String category, LocalDate date, long cents, String description) {
+        lock.lock();
+        try {
+            cells.computeIfAbsent(category, c -> new TreeMap<>())
+                    .computeIfAbsent(monthKey(date), m -> new Cell())
+                    .add(cents, description);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(String category, LocalDate date) {
+        lock.lock();
+        try {
+            TreeMap<Long, Cell> months = cells.get(category);
+            Cell cell = months != null ? months.get(monthKey(date)) : null;
+            if (cell != null) {
+                cell.stale = true;
+                cell.writes++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Summaries per category and overall for the months between from and to
+    // inclusive, optionally for one category. Safe from any thread.
+    public Report report(YearMonth from, YearMonth to, String category) {
+        long first = from != null ? monthKey(from.atDay(1)) : Long.MIN_VALUE;
+        long last = to != null ? monthKey(to.atDay(1)) : Long.MAX_VALUE;
+        List<Stale> stale = new ArrayList<>();
+        if (first <= last) {
+            lock.lock();
+            try {
+                for (String name : categories(category)) {
+                    cells.get(name).subMap(first, true, last, true).forEach((month, cell) -> {
+                        if (cell.stale) {
+                            stale.add(new Stale(name, month, cell, cell.writes));
+                        }
+                    });
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        Map<Cell, Cell> rebuilt = new IdentityHashMap<>();
+        for (Stale month : stale) {
+            rebuilt.put(month.cell(), rebuild(month.category(), month.month()));
+        }
+
+        lock.lock();
+        try {
+            for (Stale month : stale) {
+                install(month, rebuilt.get(month.cell()));
+            }
+            Cell all = new Cell();
+            List<Summary> summaries = new ArrayList<>();
+            if (first <= last) {
+                for (String name : categories(category)) {
+                    Cell merged = merge(name, first, last, rebuilt);
+                    if (merged != null) {
+                        summaries.add(summarize(name, merged));
+                        all.merge(merged);
+                    }
+                }
+            }
+            long bytes = 0;
+            for (TreeMap<Long, Cell> months : cells.values()) {
+                for (Cell cell : months.values()) {
+                    bytes += cell.amounts.estimatedBytes() + cell.words.estimatedBytes();
+                }
+            }
+            return new Report(from != null ? from.toString() : null, to != null ? to.toString() : null,
+                    QuantileSketch.RANK_ERROR, DistinctSketch.STANDARD_ERROR, bytes, summarize(null, all), summaries);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Names with cells, copied so months can be dropped while iterating
+    private List<String> categories(String category) {
+        if (category != null) {
+            return cells.containsKey(category) ? List.of(category) : List.of();
+        }
+        return new ArrayList<>(cells.keySet());
+    }
+
+    // Replaces a month with its rebuild unless it was written to since the rebuild started
+    private void install(Stale month, Cell cell) {
+        TreeMap<Long, Cell> months = cells.get(month.category());
+        if (months == null || months.get(month.month()) != month.cell() || month.cell().writes != month.writes()) {
+            return;
+        }
+        if (cell.amounts.count() > 0) {
+            months.put(month.month(), cell);
+        } else {
+            months.remove(month.month());
+            if (months.isEmpty()) {
+                cells.remove(month.category());
+            }
+        }
+    }
+
+    // A month that became stale after the rebuilds were chosen is rebuilt here,
+    // under the lock; that only happens when a delete races the report
+    private Cell merge(String category, long first, long last, Map<Cell, Cell> rebuilt) {
+        TreeMap<Long, Cell> months = cells.get(category);
+        if (months == null) {
+            return null;
+        }
+        Cell merged = new Cell();
+        for (Map.Entry<Long, Cell> month : months.subMap(first, true, last, true).entrySet()) {
+            Cell cell = month.getValue();
+            if (cell.stale) {
+                Cell fresh = rebuilt.get(cell);
+                cell = fresh != null ? fresh : rebuild(category, month.getKey());
+            }
+            merged.merge(cell);
+        }
+        return merged.amounts.count() > 0 ? merged : null;
+    }
+
+    private Cell rebuild(String category, long month) {
+        YearMonth yearMonth = YearMonth.of((int) Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+        Cell cell = new Cell();
+        search.forEach(new SearchIndex.Query(List.of(), category, null, null,
+                        yearMonth.atDay(1), yearMonth.atEndOfMonth(), null),
+                row -> cell.add(row.getAmountCents(), row.getDescription()));
+        return cell;
+    }
+
+    private static Summary summarize(String category, Cell cell) {
+        QuantileSketch amounts = cell.amounts;
+        if (amounts.count() == 0) {
+            return new Summary(category, 0, null, null, null, null, null, 0);
+        }
+        return new Summary(category, amounts.count(), Money.toDecimal(amounts.quantile(0)),
+                Money.toDecimal(amounts.quantile(0.5)), Money.toDecimal(amounts.quantile(0.9)),
+                Money.toDecimal(amounts.quantile(0.99)), Money.toDecimal(amounts.quantile(1)),
+                cell.words.estimate());
+    }
+
+    // Hashes the lower-case runs of letters and digits that SearchIndex.tokenize
+    // would return, without building a string for each
+    private static void addWords(String text, DistinctSketch words) {
+        if (text == null) {
+            return;
+        }
+        long hash = 0;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                if (!inWord) {
+                    hash = FNV_OFFSET;
+                    inWord = true;
+                }
+                hash = (hash ^ Character.toLowerCase(ch)) * FNV_PRIME;
+            } else if (inWord) {
+                words.add(mix(hash));
+                inWord = false;
+            }
+        }
+    }
+
+    // MurmurHash3's finalizer, so every bit of the FNV hash affects the register choice
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+
+    private static long monthKey(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,110 @@
+package com.expensetracker.service;
+
+import com.expensetracker.config.ExpenseProperties;
+import com.expensetracker.metrics.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// Expense partitions by tenant. Each tenant gets its own ExpenseService, so
+// writers of different tenants never share a lock and a stats query only
+// touches its own tenant's aggregates. The default tenant is opened at startup
+// (it owns the seed file and the original log directory); others are opened,
+// and recovered from their own log, on first use.
+@Service
+public class TenantRegistry {
+    public static final String DEFAULT_TENANT = "default";
+    // Also a directory name, so kept to characters that are safe on any file system
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    public static class InvalidTenantException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidTenantException(String message) {
+            super(message);
+        }
+    }
+
+    private final ExpenseProperties properties;
+    private final ServiceMetrics serviceMetrics;
+    private final Map<String, ExpenseService> tenants = new ConcurrentHashMap<>();
+    // Snapshots for all tenants, one thread per core rather than one per tenant
+    private final ScheduledExecutorService maintenance;
+
+    public TenantRegistry(ExpenseProperties properties, Metrics metrics) {
+        this.properties = properties;
+        this.serviceMetrics = new ServiceMetrics(metrics);
+        AtomicInteger count = new AtomicInteger();
+        this.maintenance = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "expense-snapshot-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        tenants.put(DEFAULT_TENANT, new ExpenseService(properties, DEFAULT_TENANT, maintenance, serviceMetrics));
+
+        metrics.gauge("expense_rows", "Expenses stored per tenant",
+                samples -> tenants.values().forEach(service ->
+                        samples.add(Metrics.labels("tenant", service.getTenant()), service.getExpenseCount())));
+        metrics.gauge("expense_estimated_bytes", "Estimated heap held by a tenant's rows and search index",
+                samples -> tenants.values().forEach(service ->
+                        samples.add(Metrics.labels("tenant", service.getTenant()), service.getEstimatedBytes())));
+        metrics.gauge("expense_bytes_per_row", "Estimated heap per stored expense, search index included",
+                samples -> tenants.values().forEach(service -> {
+                    long rows = service.getExpenseCount();
+                    samples.add(Metrics.labels("tenant", service.getTenant()),
+                            rows > 0 ? (double) service.getEstimatedBytes() / rows : 0);
+                }));
+    }
+
+    public ExpenseService getDefault() {
+        return tenants.get(DEFAULT_TENANT);
+    }
+
+    // The partition for a tenant id, opening it if needed. Ids are case-insensitive;
+    // null or empty means the default tenant.
+    public ExpenseService get(String tenant) {
+        if (tenant == null || tenant.isEmpty()) {
+            return getDefault();
+        }
+        String id = tenant.toLowerCase(Locale.ROOT);
+        ExpenseService service = tenants.get(id);
+        if (service != null) {
+            return service;
+        }
+        if (!TENANT_ID.matcher(id).matches()) {
+            throw new InvalidTenantException("Invalid tenant id: " + tenant);
+        }
+        // Racing first requests may both pass this check; the limit is a guard, not an exact cap
+        if (tenants.size() >= properties.getTenants().getMaxTenants()) {
+            throw new InvalidTenantException("Too many tenants, at most " + properties.getTenants().getMaxTenants());
+        }
+        // Recovery runs inside computeIfAbsent so a tenant is only ever opened once
+        return tenants.computeIfAbsent(id, key -> new ExpenseService(properties, key, maintenance, serviceMetrics));
+    }
+
+    // Tenants opened so far
+    public Collection<ExpenseService> getTenants() {
+        return tenants.values();
+    }
+
+    @PreDestroy
+    public void close() {
+        for (ExpenseService service : tenants.values()) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                System.out.println("Could not close tenant " + service.getTenant() + ": " + e.getMessage());
+            }
+        }
+        maintenance.shutdownNow();
+    }
+}
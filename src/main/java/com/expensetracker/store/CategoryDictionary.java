@@ -0,0 +1,112 @@
+package com.expensetracker.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Interns category names to small int ids with a count of the rows using each,
+// so all rows of a category share one String (or, in the columnar store, a
+// short id) and the categories in use are known without scanning any rows.
+// Acquire and release are O(1); an id is freed for reuse when its last row
+// goes, except for pinned names such as the presets.
+//
+// Writers must be serialized; decode and names are safe from any thread.
+public final class CategoryDictionary {
+    // Ids must fit the columnar store's short column
+    private static final int MAX_IDS = Short.MAX_VALUE + 1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] names = new String[16];
+    private int[] refs = new int[16];
+    private int[] free = new int[16];
+    private int freeCount;
+    private int used;
+    // Names in id order, rebuilt only when a category appears or disappears
+    private volatile List<String> live = List.of();
+
+    // A name that stays listed even without rows
+    public void pin(String name) {
+        acquire(name);
+    }
+
+    // Counts one more row of the category, returning its id
+    public int acquire(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            refs[existing]++;
+            return existing;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            if (used == MAX_IDS) {
+                throw new IllegalStateException("Too many distinct categories, at most " + MAX_IDS);
+            }
+            id = used++;
+            if (id == refs.length) {
+                refs = Arrays.copyOf(refs, id * 2);
+                names = Arrays.copyOf(names, id * 2);
+            }
+        }
+        names[id] = name;
+        refs[id] = 1;
+        ids.put(name, id);
+        publish();
+        return id;
+    }
+
+    // Throws as acquire would if this many names not yet in use were acquired
+    public void checkRoom(int newNames) {
+        if (newNames > MAX_IDS - used + freeCount) {
+            throw new IllegalStateException("Too many distinct categories, at most " + MAX_IDS);
+        }
+    }
+
+    public void release(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            throw new IllegalStateException("Category not in use: " + name);
+        }
+        if (--refs[id] == 0) {
+            ids.remove(name);
+            names[id] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = id;
+            publish();
+        }
+    }
+
+    // -1 when no row uses the name
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    public String decode(int id) {
+        return names[id];
+    }
+
+    // Pinned names and those of categories with rows, in id order
+    public List<String> names() {
+        return live;
+    }
+
+    private void publish() {
+        String[] current = names;
+        List<String> listed = new ArrayList<>(ids.size());
+        for (int id = 0; id < used; id++) {
+            if (current[id] != null) {
+                listed.add(current[id]);
+            }
+        }
+        // Writing the array reference again publishes the element writes before it
+        names = current;
+        live = Collections.unmodifiableList(listed);
+    }
+}
@@ -0,0 +1,263 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+
+// Column-per-field storage: primitive arrays for ids, amounts (as cents),
+// dates (as epoch days) and dictionary-encoded categories, with descriptions
+// kept in their own column. A row costs roughly 40 bytes plus its description
+// instead of five boxed objects, and Expense instances are only created as
+// short-lived views when a row is read.
+//
+// Deleting a row moves the last row into its slot, so the columns stay dense.
+// The date index is a sorted list of packed (date, id) longs. Reads of a
+// single row are optimistic and never block the writer; iteration copies
+// small batches of keys under a brief read lock; a scan reads the columns
+// directly and holds the read lock throughout, so the writer waits for it.
+public class ColumnarExpenseStore implements ExpenseStore {
+    private static final int ITERATION_BATCH = 256;
+    // Column slots, id hash entry at its load factor, date index entry and the
+    // description String header
+    private static final long ROW_BYTES = 104;
+
+    private final StampedLock lock = new StampedLock();
+    // Shared with the owner, which acquires a row's category before storing it
+    private final CategoryDictionary categories;
+    private final LongIntHashMap rowsById = new LongIntHashMap(1024, -1);
+    private final SortedLongList byDate = new SortedLongList();
+
+    private long[] ids = new long[1024];
+    private long[] amountCents = new long[1024];
+    private int[] epochDays = new int[1024];
+    private short[] categoryCodes = new short[1024];
+    private String[] descriptions = new String[1024];
+    private int rows;
+
+    public ColumnarExpenseStore(CategoryDictionary categories) {
+        this.categories = categories;
+    }
+
+    @Override
+    public Expense get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Expense expense = read(id);
+                if (lock.validate(stamp)) {
+                    return expense;
+                }
+            } catch (RuntimeException e) {
+                // Columns were resized or moved under us; retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Expense read(long id) {
+        int row = rowsById.get(id);
+        return row < 0 ? null : materialize(row);
+    }
+
+    private Expense materialize(int row) {
+        Expense expense = new Expense(categories.decode(categoryCodes[row]), amountCents[row],
+                LocalDate.ofEpochDay(epochDays[row]), descriptions[row]);
+        expense.setId(ids[row]);
+        return expense;
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        long id = PackedKeys.checkId(expense.getId());
+        long stamp = lock.writeLock();
+        try {
+            int code = categories.idOf(expense.getCategory());
+            if (code < 0) {
+                throw new IllegalStateException("Category not acquired: " + expense.getCategory());
+            }
+            int row = rowsById.get(id);
+            Expense previous = null;
+            if (row >= 0) {
+                previous = materialize(row);
+                byDate.remove(PackedKeys.dateKey(epochDays[row], id));
+            } else {
+                row = rows++;
+                ensureCapacity(rows);
+                rowsById.put(id, row);
+            }
+            ids[row] = id;
+            amountCents[row] = expense.getAmountCents();
+            epochDays[row] = (int) expense.getDate().toEpochDay();
+            categoryCodes[row] = (short) code;
+            descriptions[row] = expense.getDescription();
+            byDate.add(PackedKeys.dateKey(epochDays[row], id));
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Expense remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int row = rowsById.remove(id);
+            if (row < 0) {
+                return null;
+            }
+            Expense removed = materialize(row);
+            byDate.remove(PackedKeys.dateKey(epochDays[row], id));
+            int last = --rows;
+            if (row != last) {
+                ids[row] = ids[last];
+                amountCents[row] = amountCents[last];
+                epochDays[row] = epochDays[last];
+                categoryCodes[row] = categoryCodes[last];
+                descriptions[row] = descriptions[last];
+                rowsById.put(ids[row], row);
+            }
+            descriptions[last] = null;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(needed, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return rows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long estimateBytes(Expense expense) {
+        String description = expense.getDescription();
+        return ROW_BYTES + (description != null ? description.length() : 0);
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending() {
+        return byDateDescending(null);
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending(DateKey after) {
+        long start = after == null ? Long.MIN_VALUE : PackedKeys.dateKey(after.epochDay(), after.id());
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Expense> iterator() {
+                return new BatchIterator(start);
+            }
+
+            @Override
+            public int size() {
+                long stamp = lock.readLock();
+                try {
+                    return byDate.countAfter(start);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void scan(List<? extends RowVisitor> visitors) {
+        long stamp = lock.readLock();
+        try {
+            int slices = visitors.size();
+            IntStream.range(0, slices).parallel().forEach(slice -> {
+                RowVisitor visitor = visitors.get(slice);
+                int end = (int) ((long) rows * (slice + 1) / slices);
+                for (int row = (int) ((long) rows * slice / slices); row < end; row++) {
+                    visitor.visit(amountCents[row], epochDays[row], categories.decode(categoryCodes[row]));
+                }
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Walks the date index a batch at a time, resuming after the last key seen, so
+    // rows written concurrently are picked up or skipped but never cause errors
+    private final class BatchIterator implements Iterator<Expense> {
+        private final long[] keys = new long[ITERATION_BATCH];
+        private final Expense[] batch = new Expense[ITERATION_BATCH];
+        private int count;
+        private int position;
+        private long lastKey;
+        private boolean exhausted;
+
+        BatchIterator(long start) {
+            this.lastKey = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position == count && !exhausted) {
+                fill();
+            }
+            return position < count;
+        }
+
+        @Override
+        public Expense next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Expense expense = batch[position];
+            batch[position++] = null;
+            return expense;
+        }
+
+        private void fill() {
+            long stamp = lock.readLock();
+            try {
+                int found = byDate.next(lastKey, keys);
+                count = 0;
+                position = 0;
+                for (int i = 0; i < found; i++) {
+                    int row = rowsById.get(keys[i] & PackedKeys.ID_MASK);
+                    if (row >= 0) {
+                        batch[count++] = materialize(row);
+                    }
+                }
+                if (found > 0) {
+                    lastKey = keys[found - 1];
+                }
+                exhausted = found < keys.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+// Hash map for O(1) id lookups plus a skip list ordered by date. Both are
+// lock-free for readers; stored rows are treated as immutable and replaced
+// wholesale on update so the date key of an indexed row never changes.
+public class ConcurrentExpenseStore implements ExpenseStore {
+    // Expense, boxed id/amount, LocalDate, description String, hash map node,
+    // DateKey and skip list node with its share of index levels
+    private static final long ROW_BYTES = 224;
+
+    private final ConcurrentHashMap<Long, Expense> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<DateKey, Expense> byDate = new ConcurrentSkipListMap<>();
+
+    @Override
+    public Expense get(long id) {
+        return byId.get(id);
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        Expense previous = byId.put(expense.getId(), expense);
+        if (previous != null) {
+            byDate.remove(DateKey.of(previous));
+        }
+        byDate.put(DateKey.of(expense), expense);
+        return previous;
+    }
+
+    @Override
+    public Expense remove(long id) {
+        Expense removed = byId.remove(id);
+        if (removed != null) {
+            byDate.remove(DateKey.of(removed));
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public long estimateBytes(Expense expense) {
+        String description = expense.getDescription();
+        return ROW_BYTES + (description != null ? description.length() : 0);
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending() {
+        return Collections.unmodifiableCollection(byDate.values());
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending(DateKey after) {
+        if (after == null) {
+            return byDateDescending();
+        }
+        return Collections.unmodifiableCollection(byDate.tailMap(after, false).values());
+    }
+
+    // Weakly consistent like the views; slices are split off the id map, so
+    // they are only roughly even
+    @Override
+    public void scan(List<? extends RowVisitor> visitors) {
+        List<Spliterator<Expense>> slices = new ArrayList<>(List.of(byId.values().spliterator()));
+        for (int tries = 0; slices.size() < visitors.size() && tries < visitors.size() * 2; tries++) {
+            Spliterator<Expense> slice = slices.remove(0);
+            Spliterator<Expense> half = slice.trySplit();
+            slices.add(slice);
+            if (half != null) {
+                slices.add(half);
+            }
+        }
+        IntStream.range(0, slices.size()).parallel().forEach(i -> {
+            RowVisitor visitor = visitors.get(i);
+            slices.get(i).forEachRemaining(row ->
+                    visitor.visit(row.getAmountCents(), (int) row.getDate().toEpochDay(), row.getCategory()));
+        });
+    }
+}
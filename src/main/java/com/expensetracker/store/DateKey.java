@@ -0,0 +1,34 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.time.LocalDate;
+
+// Sort key for the date index: most recent date first, then ascending id
+public record DateKey(long epochDay, long id) implements Comparable<DateKey> {
+
+    public static DateKey of(Expense expense) {
+        return new DateKey(expense.getDate().toEpochDay(), expense.getId());
+    }
+
+    // Pagination cursors are written as "<date>,<id>", e.g. "2024-01-15,12"
+    public static DateKey parseCursor(String cursor) {
+        int comma = cursor.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Cursor must be <date>,<id>: " + cursor);
+        }
+        LocalDate date = LocalDate.parse(cursor.substring(0, comma).trim());
+        long id = Long.parseLong(cursor.substring(comma + 1).trim());
+        return new DateKey(date.toEpochDay(), id);
+    }
+
+    public String toCursor() {
+        return LocalDate.ofEpochDay(epochDay) + "," + id;
+    }
+
+    @Override
+    public int compareTo(DateKey other) {
+        int byDate = Long.compare(other.epochDay, epochDay);
+        return byDate != 0 ? byDate : Long.compare(id, other.id);
+    }
+}
@@ -0,0 +1,67 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Compact binary row layout shared by the write-ahead log and snapshots:
+// id (8) | epoch day (4) | amount (8) | category (2 + UTF-8) | description (4 + UTF-8, -1 = null)
+// The amount is a long of cents since format version 2 and a double before.
+final class ExpenseCodec {
+    static final int VERSION = 2;
+    static final int DOUBLE_AMOUNTS = 1;
+
+    private ExpenseCodec() {}
+
+    static int encodedSize(byte[] category, byte[] description) {
+        return 8 + 4 + 8 + 2 + category.length + 4 + (description == null ? 0 : description.length);
+    }
+
+    static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void write(ByteBuffer buffer, Expense expense, byte[] category, byte[] description) {
+        if (category.length > 0xFFFF) {
+            throw new IllegalArgumentException("Category name is too long");
+        }
+        buffer.putLong(expense.getId());
+        buffer.putInt((int) expense.getDate().toEpochDay());
+        buffer.putLong(expense.getAmountCents());
+        buffer.putShort((short) category.length);
+        buffer.put(category);
+        if (description == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(description.length);
+            buffer.put(description);
+        }
+    }
+
+    static Expense read(ByteBuffer buffer, int version) {
+        long id = buffer.getLong();
+        LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+        long amount = version == DOUBLE_AMOUNTS
+                ? Money.toCents(BigDecimal.valueOf(buffer.getDouble()).setScale(Money.SCALE, RoundingMode.HALF_EVEN))
+                : buffer.getLong();
+        String category = readString(buffer, Short.toUnsignedInt(buffer.getShort()));
+        String description = readString(buffer, buffer.getInt());
+        Expense expense = new Expense(category, amount, date, description);
+        expense.setId(id);
+        return expense;
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,44 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.util.Collection;
+import java.util.List;
+
+// Storage for expense rows, keyed by id with a date-ordered secondary index.
+// Implementations must allow reads concurrently with a single writer; callers
+// serialize writes themselves so that related indexes stay consistent.
+public interface ExpenseStore {
+
+    // A row's fields as scan reads them; category is the dictionary's shared
+    // name, so a scan allocates nothing per row
+    @FunctionalInterface
+    interface RowVisitor {
+        void visit(long amountCents, int epochDay, String category);
+    }
+
+    Expense get(long id);
+
+    // Inserts or replaces the row with the same id, returning the previous row
+    Expense put(Expense expense);
+
+    Expense remove(long id);
+
+    int size();
+
+    // Approximate memory a stored row occupies, including its index entries
+    // (and for the off-heap store, its off-heap bytes); used for per-tenant
+    // memory accounting
+    long estimateBytes(Expense expense);
+
+    // All rows, most recent date first (ties broken by id)
+    Collection<Expense> byDateDescending();
+
+    // Rows strictly after the given key in date order; a live view, not a copy
+    Collection<Expense> byDateDescending(DateKey after);
+
+    // Every row's amount, date and category, in no particular order and
+    // without building Expense views. The rows are cut into one slice per
+    // visitor, and several slices are visited in parallel on the fork-join pool.
+    void scan(List<? extends RowVisitor> visitors);
+}
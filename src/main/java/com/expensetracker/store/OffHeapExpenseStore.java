@@ -0,0 +1,372 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+
+// Rows kept outside the Java heap. Fixed-width fields live in 32-byte records
+// in direct ByteBuffer slabs, and descriptions as UTF-8 in an append-only text
+// area of direct chunks, so a million rows add no objects for the GC to trace
+// or copy. Only the id hash and the date index stay on the heap, both as
+// primitive arrays.
+//
+// Like the columnar store, deleting a row moves the last record into its slot,
+// reads are optimistic and a scan reads the records under the read lock. A
+// replaced or deleted description leaves garbage in the text area; once
+// garbage outweighs live text the area is rewritten.
+//
+// Direct buffers are freed when the GC collects their small heap handles, so
+// -XX:MaxDirectMemorySize bounds how much off-heap memory the store may hold.
+public class OffHeapExpenseStore implements ExpenseStore {
+    private static final int ITERATION_BATCH = 256;
+
+    // Record layout: id, amount in cents, epoch day, category id, description reference
+    private static final int ROW = 32;
+    private static final int ID = 0;
+    private static final int AMOUNT = 8;
+    private static final int EPOCH_DAY = 16;
+    private static final int CATEGORY = 20;
+    private static final int DESCRIPTION = 24;
+    private static final int SLAB_BITS = 15;
+    private static final int SLAB_ROWS = 1 << SLAB_BITS;
+    private static final int TEXT_CHUNK = 1 << 22;
+    // A text entry is its byte length followed by the bytes; -1 stands for null
+    private static final int NULL_TEXT = -1;
+    // Id hash entry at its load factor and date index entry
+    private static final long HEAP_BYTES_PER_ROW = 40;
+
+    private final StampedLock lock = new StampedLock();
+    // Shared with the owner, which acquires a row's category before storing it
+    private final CategoryDictionary categories;
+    private final LongIntHashMap rowsById = new LongIntHashMap(1024, -1);
+    private final SortedLongList byDate = new SortedLongList();
+
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+    private int rows;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int chunkCount;
+    // Write position in the last chunk
+    private int textEnd;
+    private long liveTextBytes;
+    private long garbageTextBytes;
+
+    public OffHeapExpenseStore(CategoryDictionary categories) {
+        this.categories = categories;
+    }
+
+    @Override
+    public Expense get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Expense expense = read(id);
+                if (lock.validate(stamp)) {
+                    return expense;
+                }
+            } catch (RuntimeException e) {
+                // Records were moved or rewritten under us; retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Expense read(long id) {
+        int row = rowsById.get(id);
+        return row < 0 ? null : materialize(row);
+    }
+
+    private Expense materialize(int row) {
+        ByteBuffer slab = slabs[row >>> SLAB_BITS];
+        int at = (row & (SLAB_ROWS - 1)) * ROW;
+        Expense expense = new Expense(categories.decode(slab.getShort(at + CATEGORY)), slab.getLong(at + AMOUNT),
+                LocalDate.ofEpochDay(slab.getInt(at + EPOCH_DAY)), readText(slab.getLong(at + DESCRIPTION)));
+        expense.setId(slab.getLong(at + ID));
+        return expense;
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        long id = PackedKeys.checkId(expense.getId());
+        long stamp = lock.writeLock();
+        try {
+            int code = categories.idOf(expense.getCategory());
+            if (code < 0) {
+                throw new IllegalStateException("Category not acquired: " + expense.getCategory());
+            }
+            int row = rowsById.get(id);
+            Expense previous = null;
+            if (row >= 0) {
+                previous = materialize(row);
+                byDate.remove(PackedKeys.dateKey(previous.getDate().toEpochDay(), id));
+                freeText(descriptionRef(row));
+            } else {
+                row = rows++;
+                ensureCapacity(rows);
+                rowsById.put(id, row);
+            }
+            long epochDay = expense.getDate().toEpochDay();
+            ByteBuffer slab = slabs[row >>> SLAB_BITS];
+            int at = (row & (SLAB_ROWS - 1)) * ROW;
+            slab.putLong(at + ID, id);
+            slab.putLong(at + AMOUNT, expense.getAmountCents());
+            slab.putInt(at + EPOCH_DAY, (int) epochDay);
+            slab.putShort(at + CATEGORY, (short) code);
+            slab.putLong(at + DESCRIPTION, appendText(expense.getDescription()));
+            byDate.add(PackedKeys.dateKey(epochDay, id));
+            compactTextIfNeeded();
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Expense remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int row = rowsById.remove(id);
+            if (row < 0) {
+                return null;
+            }
+            Expense removed = materialize(row);
+            byDate.remove(PackedKeys.dateKey(removed.getDate().toEpochDay(), id));
+            freeText(descriptionRef(row));
+            int last = --rows;
+            if (row != last) {
+                ByteBuffer from = slabs[last >>> SLAB_BITS];
+                int fromAt = (last & (SLAB_ROWS - 1)) * ROW;
+                ByteBuffer to = slabs[row >>> SLAB_BITS];
+                to.put((row & (SLAB_ROWS - 1)) * ROW, from, fromAt, ROW);
+                rowsById.put(from.getLong(fromAt + ID), row);
+            }
+            compactTextIfNeeded();
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Slabs are added, never copied, so growing costs one allocation per SLAB_ROWS rows
+    private void ensureCapacity(int needed) {
+        int slabsNeeded = (needed + SLAB_ROWS - 1) >>> SLAB_BITS;
+        if (slabsNeeded <= slabs.length) {
+            return;
+        }
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabsNeeded);
+        for (int i = slabs.length; i < slabsNeeded; i++) {
+            grown[i] = ByteBuffer.allocateDirect(SLAB_ROWS * ROW);
+        }
+        slabs = grown;
+    }
+
+    private long descriptionRef(int row) {
+        return slabs[row >>> SLAB_BITS].getLong((row & (SLAB_ROWS - 1)) * ROW + DESCRIPTION);
+    }
+
+    // Text references are the chunk index in the high half and the offset in the low half
+
+    private String readText(long ref) {
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+        int at = (int) ref;
+        int length = chunk.getInt(at);
+        if (length == NULL_TEXT) {
+            return null;
+        }
+        // A torn optimistic read must fail here rather than allocate a bogus length
+        if (length < 0 || length > chunk.capacity() - at - 4) {
+            throw new IllegalStateException("Corrupt text reference");
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(at + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long appendText(String text) {
+        byte[] bytes = text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+        int length = bytes != null ? bytes.length : 0;
+        if (chunkCount == 0 || textEnd + 4 + length > chunks[chunkCount - 1].capacity()) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(4, chunkCount * 2));
+            }
+            chunks[chunkCount++] = ByteBuffer.allocateDirect(Math.max(TEXT_CHUNK, 4 + length));
+            textEnd = 0;
+        }
+        ByteBuffer chunk = chunks[chunkCount - 1];
+        long ref = (long) (chunkCount - 1) << 32 | textEnd;
+        chunk.putInt(textEnd, bytes != null ? length : NULL_TEXT);
+        if (bytes != null) {
+            chunk.put(textEnd + 4, bytes);
+        }
+        textEnd += 4 + length;
+        liveTextBytes += 4 + length;
+        return ref;
+    }
+
+    private void freeText(long ref) {
+        int length = Math.max(0, chunks[(int) (ref >>> 32)].getInt((int) ref));
+        liveTextBytes -= 4 + length;
+        garbageTextBytes += 4 + length;
+    }
+
+    // Rewrites every live description into fresh chunks once garbage exceeds both
+    // the live text and one chunk, so the cost is amortized over the writes that
+    // made the garbage. Callers hold the write lock.
+    private void compactTextIfNeeded() {
+        if (garbageTextBytes <= Math.max(liveTextBytes, TEXT_CHUNK)) {
+            return;
+        }
+        ByteBuffer[] oldChunks = chunks;
+        chunks = new ByteBuffer[0];
+        chunkCount = 0;
+        textEnd = 0;
+        liveTextBytes = 0;
+        garbageTextBytes = 0;
+        for (int row = 0; row < rows; row++) {
+            ByteBuffer slab = slabs[row >>> SLAB_BITS];
+            int at = (row & (SLAB_ROWS - 1)) * ROW + DESCRIPTION;
+            long ref = slab.getLong(at);
+            ByteBuffer chunk = oldChunks[(int) (ref >>> 32)];
+            int length = chunk.getInt((int) ref);
+            String text = null;
+            if (length != NULL_TEXT) {
+                byte[] bytes = new byte[length];
+                chunk.get((int) ref + 4, bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+            }
+            slab.putLong(at, appendText(text));
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return rows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Heap and off-heap together, so tenant memory limits still bound the total
+    @Override
+    public long estimateBytes(Expense expense) {
+        String description = expense.getDescription();
+        return HEAP_BYTES_PER_ROW + ROW + 4 + (description != null ? description.length() : 0);
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending() {
+        return byDateDescending(null);
+    }
+
+    @Override
+    public Collection<Expense> byDateDescending(DateKey after) {
+        long start = after == null ? Long.MIN_VALUE : PackedKeys.dateKey(after.epochDay(), after.id());
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Expense> iterator() {
+                return new BatchIterator(start);
+            }
+
+            @Override
+            public int size() {
+                long stamp = lock.readLock();
+                try {
+                    return byDate.countAfter(start);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void scan(List<? extends RowVisitor> visitors) {
+        long stamp = lock.readLock();
+        try {
+            int slices = visitors.size();
+            IntStream.range(0, slices).parallel().forEach(slice -> {
+                RowVisitor visitor = visitors.get(slice);
+                int end = (int) ((long) rows * (slice + 1) / slices);
+                for (int row = (int) ((long) rows * slice / slices); row < end; row++) {
+                    ByteBuffer slab = slabs[row >>> SLAB_BITS];
+                    int at = (row & (SLAB_ROWS - 1)) * ROW;
+                    visitor.visit(slab.getLong(at + AMOUNT), slab.getInt(at + EPOCH_DAY),
+                            categories.decode(slab.getShort(at + CATEGORY)));
+                }
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Walks the date index a batch at a time, resuming after the last key seen, so
+    // rows written concurrently are picked up or skipped but never cause errors
+    private final class BatchIterator implements Iterator<Expense> {
+        private final long[] keys = new long[ITERATION_BATCH];
+        private final Expense[] batch = new Expense[ITERATION_BATCH];
+        private int count;
+        private int position;
+        private long lastKey;
+        private boolean exhausted;
+
+        BatchIterator(long start) {
+            this.lastKey = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position == count && !exhausted) {
+                fill();
+            }
+            return position < count;
+        }
+
+        @Override
+        public Expense next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Expense expense = batch[position];
+            batch[position++] = null;
+            return expense;
+        }
+
+        private void fill() {
+            long stamp = lock.readLock();
+            try {
+                int found = byDate.next(lastKey, keys);
+                count = 0;
+                position = 0;
+                for (int i = 0; i < found; i++) {
+                    int row = rowsById.get(keys[i] & PackedKeys.ID_MASK);
+                    if (row >= 0) {
+                        batch[count++] = materialize(row);
+                    }
+                }
+                if (found > 0) {
+                    lastKey = keys[found - 1];
+                }
+                exhausted = found < keys.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
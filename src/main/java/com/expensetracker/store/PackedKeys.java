@@ -0,0 +1,44 @@
+package com.expensetracker.store;
+
+// Index keys packing a sort value and a row id into one signed long, so an
+// ordered index is a SortedLongList instead of a tree of boxed keys. The id
+// takes the low 39 bits; sorting the longs sorts by value, then ascending id.
+final class PackedKeys {
+    static final int ID_BITS = 39;
+    static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final int DAY_BITS = 63 - ID_BITS;
+    private static final long DAY_OFFSET = 1L << (DAY_BITS - 1);
+    private static final long MAX_DAY = (1L << DAY_BITS) - 1;
+
+    private PackedKeys() {
+    }
+
+    static long checkId(long id) {
+        if (id < 0 || id > ID_MASK) {
+            throw new IllegalArgumentException("Id out of range for packed index: " + id);
+        }
+        return id;
+    }
+
+    // Orders most recent date first, then ascending id, as a single signed long.
+    // Dates beyond roughly +/-23,000 years are clamped, which only affects their order.
+    static long dateKey(long epochDay, long id) {
+        long day = Math.max(0, Math.min(MAX_DAY, epochDay + DAY_OFFSET));
+        return ((MAX_DAY - day) << ID_BITS) | id;
+    }
+
+    // Orders by amount in cents, then ascending id. The amount keeps the sign,
+    // exponent and top 13 mantissa bits of its double (about 0.01% precision), so
+    // a range lookup can return neighbours just outside the range; callers
+    // recheck the exact value.
+    static long amountKey(long cents, long id) {
+        return amountBucket(cents) << ID_BITS | id;
+    }
+
+    static long amountBucket(long cents) {
+        // Sign-magnitude to two's complement, so the long orders like the double
+        long bits = Double.doubleToLongBits(cents + 0.0);
+        long sortable = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        return sortable >> ID_BITS;
+    }
+}
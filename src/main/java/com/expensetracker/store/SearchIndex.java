@@ -0,0 +1,434 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Secondary indexes for expense search: an inverted index from description
+// tokens to ids, ids per category, and (amount, id) and (date, id) range
+// indexes, all as SortedLongLists. Maintained by ExpenseService alongside the
+// store; callers serialize writes, searches run concurrently with them.
+//
+// A search enumerates whichever index yields the fewest candidates and checks
+// every other condition against the row itself, so results always agree with
+// the row returned. Driving from the date index yields rows already in result
+// order and stops after one page; any other driver keeps the best page in a
+// bounded heap.
+public class SearchIndex {
+    private static final int BATCH = 256;
+    // Per posting: the long itself plus block slack
+    private static final long POSTING_BYTES = 12;
+    private static final Comparator<Expense> RESULT_ORDER = Comparator.comparing(DateKey::of);
+
+    // Terms match any token they are a prefix of; other conditions are optional.
+    // Amount bounds are in cents.
+    public record Query(List<String> terms, String category, Long minCents, Long maxCents,
+                        LocalDate from, LocalDate to, DateKey after) {}
+
+    private final ExpenseStore rows;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, SortedLongList> tokens = new TreeMap<>();
+    private final Map<String, SortedLongList> categories = new HashMap<>();
+    private final SortedLongList byAmount = new SortedLongList();
+    private final SortedLongList byDate = new SortedLongList();
+    // Written under the write lock, read without it for memory accounting
+    private volatile long postings;
+
+    public SearchIndex(ExpenseStore rows) {
+        this.rows = rows;
+    }
+
+    public void add(Expense expense) {
+        long id = PackedKeys.checkId(expense.getId());
+        List<String> words = tokenize(expense.getDescription());
+        lock.writeLock().lock();
+        try {
+            for (String word : words) {
+                tokens.computeIfAbsent(word, w -> new SortedLongList()).add(id);
+            }
+            categories.computeIfAbsent(expense.getCategory(), c -> new SortedLongList()).add(id);
+            byAmount.add(PackedKeys.amountKey(expense.getAmountCents(), id));
+            byDate.add(PackedKeys.dateKey(expense.getDate().toEpochDay(), id));
+            postings += words.size() + 3;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Expense expense) {
+        long id = expense.getId();
+        List<String> words = tokenize(expense.getDescription());
+        lock.writeLock().lock();
+        try {
+            for (String word : words) {
+                removeFrom(tokens, word, id);
+            }
+            removeFrom(categories, expense.getCategory(), id);
+            byAmount.remove(PackedKeys.amountKey(expense.getAmountCents(), id));
+            byDate.remove(PackedKeys.dateKey(expense.getDate().toEpochDay(), id));
+            postings -= words.size() + 3;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void removeFrom(Map<String, SortedLongList> index, String key, long id) {
+        SortedLongList ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            index.remove(key);
+        }
+    }
+
+    // Approximate heap held by the index entries
+    public long estimatedBytes() {
+        return postings * POSTING_BYTES;
+    }
+
+    // Distinct lower-case runs of letters and digits
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        TreeSet<String> words = new TreeSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    // Up to limit matching rows in date order (most recent first), after the query's cursor
+    public List<Expense> search(Query query, int limit) {
+        Driver driver = plan(query, limit);
+        if (driver == null) {
+            return List.of();
+        }
+        List<Expense> page = new ArrayList<>(Math.min(limit, 1024));
+        if (driver.ordered) {
+            walk(driver, query, row -> {
+                page.add(row);
+                return page.size() < limit;
+            });
+            return page;
+        }
+        PriorityQueue<Expense> best = new PriorityQueue<>(RESULT_ORDER.reversed());
+        walk(driver, query, row -> {
+            best.offer(row);
+            if (best.size() > limit) {
+                best.poll();
+            }
+            return true;
+        });
+        page.addAll(best);
+        page.sort(RESULT_ORDER);
+        return page;
+    }
+
+    // Every matching row, in no particular order
+    public void forEach(Query query, Consumer<Expense> action) {
+        Driver driver = plan(query, Integer.MAX_VALUE);
+        if (driver != null) {
+            walk(driver, query, row -> {
+                action.accept(row);
+                return true;
+            });
+        }
+    }
+
+    // Upper bound on the rows a forEach would read: the size of the narrowest index
+    public long estimate(Query query) {
+        Driver driver = plan(query, Integer.MAX_VALUE);
+        return driver == null ? 0 : driver.count;
+    }
+
+    // Feeds matching rows to the sink until it returns false
+    private void walk(Driver driver, Query query, Predicate<Expense> sink) {
+        long[] keys = new long[BATCH];
+        for (int r = 0; r < driver.ranges.size(); r++) {
+            Range range = driver.ranges.get(r);
+            // Only a term with several expansions can reach a row more than once
+            String token = driver.tokens != null && driver.tokens.size() > 1 ? driver.tokens.get(r) : null;
+            long last = range.low == Long.MIN_VALUE ? Long.MIN_VALUE : range.low - 1;
+            while (true) {
+                // Candidates missing from another condition's id list are dropped
+                // before any row is read
+                int kept = 0;
+                boolean done;
+                lock.readLock().lock();
+                try {
+                    int found = range.keys.next(last, keys);
+                    done = found < keys.length;
+                    for (int i = 0; i < found; i++) {
+                        long key = keys[i];
+                        if (key > range.high) {
+                            done = true;
+                            break;
+                        }
+                        last = key;
+                        if (driver.inFilters(key & PackedKeys.ID_MASK)) {
+                            keys[kept++] = key;
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                for (int i = 0; i < kept; i++) {
+                    long key = keys[i];
+                    Expense row = rows.get(key & PackedKeys.ID_MASK);
+                    if (row != null && driver.stillAt(row, key) && matches(row, query, driver.term, token)
+                            && !sink.test(row)) {
+                        return;
+                    }
+                }
+                if (done) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // Whether the row meets every condition of the query, for callers scanning rows themselves
+    public static boolean matches(Expense row, Query query) {
+        return matches(row, query, null, null);
+    }
+
+    // The category, amount and date conditions alone, for rows read by field
+    // in a store scan; terms and after are not checked
+    public static boolean matches(long amountCents, int epochDay, String category, Query query) {
+        if (query.category() != null && !query.category().equals(category)) {
+            return false;
+        }
+        if (query.minCents() != null && amountCents < query.minCents()
+                || query.maxCents() != null && amountCents > query.maxCents()) {
+            return false;
+        }
+        return (query.from() == null || epochDay >= query.from().toEpochDay())
+                && (query.to() == null || epochDay <= query.to().toEpochDay());
+    }
+
+    // Checks every condition on the row. When driven by the expansions of a term,
+    // the row is only accepted from the first expansion it contains, so a row
+    // holding several words with that prefix is returned once.
+    private static boolean matches(Expense row, Query query, String driverTerm, String token) {
+        if (query.category() != null && !query.category().equals(row.getCategory())) {
+            return false;
+        }
+        long amount = row.getAmountCents();
+        if (query.minCents() != null && amount < query.minCents()
+                || query.maxCents() != null && amount > query.maxCents()) {
+            return false;
+        }
+        LocalDate date = row.getDate();
+        if (query.from() != null && date.isBefore(query.from())
+                || query.to() != null && date.isAfter(query.to())) {
+            return false;
+        }
+        if (query.after() != null && DateKey.of(row).compareTo(query.after()) <= 0) {
+            return false;
+        }
+        String description = row.getDescription();
+        for (String term : query.terms()) {
+            if (token != null && term.equals(driverTerm)) {
+                if (!token.equals(firstWordWithPrefix(description, term))) {
+                    return false;
+                }
+            } else if (!hasWordWithPrefix(description, term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Scans word starts the way tokenize splits them, without building the token list
+    private static boolean hasWordWithPrefix(String text, String prefix) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i) && text.regionMatches(true, i, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The smallest token of the text starting with prefix, or null
+    private static String firstWordWithPrefix(String text, String prefix) {
+        if (text == null) {
+            return null;
+        }
+        String first = null;
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i) && text.regionMatches(true, i, prefix, 0, prefix.length())) {
+                int end = i + 1;
+                while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                    end++;
+                }
+                String word = text.substring(i, end).toLowerCase(Locale.ROOT);
+                if (first == null || word.compareTo(first) < 0) {
+                    first = word;
+                }
+            }
+        }
+        return first;
+    }
+
+    private static boolean isWordStart(String text, int i) {
+        return Character.isLetterOrDigit(text.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+    }
+
+    // Keys in [low, high] of one list
+    private record Range(SortedLongList keys, long low, long high) {
+        int count() {
+            int upTo = high == Long.MAX_VALUE ? 0 : keys.countAfter(high);
+            int from = low == Long.MIN_VALUE ? keys.size() : keys.countAfter(low - 1);
+            return from - upTo;
+        }
+    }
+
+    // Candidate ids from one index: a single range, or one range per expansion
+    // of a prefix term. Packed range keys are rechecked against the row so a
+    // row updated mid-search is not seen at both its old and new position.
+    private static final class Driver {
+        final List<Range> ranges;
+        // The prefix term and its expansions, one per range
+        final String term;
+        final List<String> tokens;
+        final boolean ordered;
+        final boolean packed;
+        final long count;
+        // Set for a single list of plain ids, which can then filter other drivers
+        final SortedLongList ids;
+        // Id lists of the other conditions, checked before a row is read
+        List<SortedLongList> filters = List.of();
+
+        Driver(List<Range> ranges, String term, List<String> tokens, boolean ordered, boolean packed) {
+            this.ranges = ranges;
+            this.term = term;
+            this.tokens = tokens;
+            this.ordered = ordered;
+            this.packed = packed;
+            this.count = ranges.stream().mapToLong(Range::count).sum();
+            this.ids = ranges.size() == 1 && !packed ? ranges.get(0).keys : null;
+        }
+
+        // Callers hold the read lock
+        boolean inFilters(long id) {
+            for (SortedLongList filter : filters) {
+                if (!filter.contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean stillAt(Expense row, long key) {
+            if (!packed) {
+                return true;
+            }
+            long id = row.getId();
+            return ordered ? key == PackedKeys.dateKey(row.getDate().toEpochDay(), id)
+                    : key == PackedKeys.amountKey(row.getAmountCents(), id);
+        }
+    }
+
+    // Picks the index to enumerate. An unordered driver must be read in full; the
+    // date index can stop after a page, so its cost is the rows expected to be
+    // read before limit matches turn up, assuming the other conditions are independent.
+    private Driver plan(Query query, int limit) {
+        lock.readLock().lock();
+        try {
+            long total = byDate.size();
+            if (total == 0) {
+                return null;
+            }
+            List<Driver> candidates = new ArrayList<>();
+            for (String term : query.terms()) {
+                NavigableMap<String, SortedLongList> expansions =
+                        tokens.subMap(term, true, term + Character.MAX_VALUE, false);
+                if (expansions.isEmpty()) {
+                    return null;
+                }
+                List<Range> ranges = new ArrayList<>(expansions.size());
+                for (SortedLongList ids : expansions.values()) {
+                    ranges.add(new Range(ids, Long.MIN_VALUE, Long.MAX_VALUE));
+                }
+                candidates.add(new Driver(ranges, term, new ArrayList<>(expansions.keySet()), false, false));
+            }
+            if (query.category() != null) {
+                SortedLongList ids = categories.get(query.category());
+                if (ids == null) {
+                    return null;
+                }
+                candidates.add(new Driver(List.of(new Range(ids, Long.MIN_VALUE, Long.MAX_VALUE)), null, null, false, false));
+            }
+            if (query.minCents() != null || query.maxCents() != null) {
+                long low = query.minCents() == null ? Long.MIN_VALUE : PackedKeys.amountKey(query.minCents(), 0);
+                long high = query.maxCents() == null ? Long.MAX_VALUE
+                        : PackedKeys.amountKey(query.maxCents(), PackedKeys.ID_MASK);
+                if (low > high) {
+                    return null;
+                }
+                candidates.add(new Driver(List.of(new Range(byAmount, low, high)), null, null, false, true));
+            }
+
+            long low = query.to() == null ? Long.MIN_VALUE : PackedKeys.dateKey(query.to().toEpochDay(), 0);
+            long high = query.from() == null ? Long.MAX_VALUE
+                    : PackedKeys.dateKey(query.from().toEpochDay(), PackedKeys.ID_MASK);
+            if (query.after() != null) {
+                low = Math.max(low, PackedKeys.dateKey(query.after().epochDay(), query.after().id()) + 1);
+            }
+            if (low > high) {
+                return null;
+            }
+            Driver byDateDriver = new Driver(List.of(new Range(byDate, low, high)), null, null, true, true);
+
+            Driver best = byDateDriver;
+            double bestCost = byDateDriver.count;
+            double selectivity = 1;
+            for (Driver candidate : candidates) {
+                if (candidate.count == 0) {
+                    return null;
+                }
+                selectivity *= (double) candidate.count / total;
+                if (candidate.count < bestCost) {
+                    best = candidate;
+                    bestCost = candidate.count;
+                }
+            }
+            double dateCost = Math.min(byDateDriver.count, limit / selectivity);
+            Driver chosen = dateCost <= bestCost ? byDateDriver : best;
+            List<SortedLongList> filters = new ArrayList<>();
+            for (Driver candidate : candidates) {
+                if (candidate != chosen && candidate.ids != null) {
+                    filters.add(candidate.ids);
+                }
+            }
+            // Smallest list first: it rejects the most candidates
+            filters.sort(Comparator.comparingInt(SortedLongList::size));
+            chosen.filters = filters;
+            return chosen;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
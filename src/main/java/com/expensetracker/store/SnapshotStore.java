@@ -0,0 +1,160 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Compacted point-in-time copies of the store. snapshot-N.snap holds every row
+// as of the moment log segment N was started, so recovery loads the newest
+// snapshot and replays segments N and later.
+//
+// Because log records carry whole rows and deletes are by id, replaying them
+// is idempotent. A snapshot may therefore be written from the live store
+// while writes continue: anything it misses or catches half-way is fixed up by
+// replaying segment N onwards.
+//
+// File: magic (4) | version (4) | segment (8) | next id (8) | rows (length + row)* | -1 | CRC32 (8)
+public class SnapshotStore {
+
+    public record Info(long segment, long nextId, long rows) {}
+
+    private static final int MAGIC = 0x45585053; // "EXPS"
+    // Row format version, see ExpenseCodec
+    private static final int VERSION = ExpenseCodec.VERSION;
+
+    private final Path dir;
+
+    public SnapshotStore(Path dir) {
+        this.dir = dir;
+    }
+
+    public Info write(long segment, long nextId, Iterable<Expense> rows) throws IOException {
+        Files.createDirectories(dir);
+        Path target = snapshotPath(segment);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long count = 0;
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            out.writeLong(nextId);
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (Expense expense : rows) {
+                byte[] category = ExpenseCodec.utf8(expense.getCategory());
+                byte[] description = ExpenseCodec.utf8(expense.getDescription());
+                int size = ExpenseCodec.encodedSize(category, description);
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+                }
+                buffer.clear();
+                ExpenseCodec.write(buffer, expense, category, description);
+                out.writeInt(size);
+                out.write(buffer.array(), 0, size);
+                count++;
+            }
+            out.writeInt(-1);
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new Info(segment, nextId, count);
+    }
+
+    // Loads the newest intact snapshot into the consumer, or returns null if there is none
+    public Info loadLatest(Consumer<Expense> consumer) throws IOException {
+        List<Long> available = snapshots();
+        for (int i = available.size() - 1; i >= 0; i--) {
+            List<Expense> rows = new ArrayList<>();
+            Info info = read(snapshotPath(available.get(i)), rows);
+            if (info != null) {
+                rows.forEach(consumer);
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private Info read(Path path, List<Expense> rows) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int version = in.readInt();
+            if (version < ExpenseCodec.DOUBLE_AMOUNTS || version > VERSION) {
+                return null;
+            }
+            long segment = in.readLong();
+            long nextId = in.readLong();
+            byte[] row = new byte[256];
+            int size;
+            while ((size = in.readInt()) >= 0) {
+                if (row.length < size) {
+                    row = new byte[Math.max(size, row.length * 2)];
+                }
+                in.readFully(row, 0, size);
+                rows.add(ExpenseCodec.read(ByteBuffer.wrap(row, 0, size), version));
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                return null;
+            }
+            return new Info(segment, nextId, rows.size());
+        } catch (java.io.EOFException e) {
+            // Truncated snapshot, fall back to an older one
+            return null;
+        }
+    }
+
+    public void deleteBefore(long segment) throws IOException {
+        for (long existing : snapshots()) {
+            if (existing < segment) {
+                Files.deleteIfExists(snapshotPath(existing));
+            }
+        }
+    }
+
+    private Path snapshotPath(long segment) {
+        return dir.resolve(String.format("snapshot-%016d.snap", segment));
+    }
+
+    private List<Long> snapshots() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("snapshot-") && name.endsWith(".snap"))
+                    .forEach(name -> numbers.add(Long.parseLong(name.substring(9, name.length() - 5))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+}
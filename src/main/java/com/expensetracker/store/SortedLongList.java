@@ -0,0 +1,175 @@
+package com.expensetracker.store;
+
+import java.util.Arrays;
+
+// Sorted set of longs kept in small sorted blocks: inserts and removes move at
+// most one block's worth of elements, and seeks are two binary searches. Used
+// as a boxing-free ordered index. Not thread-safe on its own.
+//
+// The first block starts small and doubles up to full size, so a list holding
+// a handful of keys (a rare search token) costs bytes rather than a full block.
+final class SortedLongList {
+    private static final int BLOCK = 512;
+    private static final int FIRST_BLOCK = 4;
+
+    private long[][] blocks = new long[4][];
+    private int[] sizes = new int[4];
+    private int blockCount;
+    private int size;
+
+    void add(long key) {
+        if (blockCount == 0) {
+            blocks[0] = new long[FIRST_BLOCK];
+            blocks[0][0] = key;
+            sizes[0] = 1;
+            blockCount = 1;
+            size = 1;
+            return;
+        }
+        int b = blockFor(key);
+        long[] block = blocks[b];
+        int n = sizes[b];
+        int at = search(block, n, key);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (n == block.length && n < BLOCK) {
+            block = Arrays.copyOf(block, Math.min(BLOCK, n * 2));
+            blocks[b] = block;
+        } else if (n == BLOCK) {
+            split(b);
+            if (at > BLOCK / 2) {
+                b++;
+                at -= BLOCK / 2;
+            }
+            block = blocks[b];
+            n = sizes[b];
+        }
+        System.arraycopy(block, at, block, at + 1, n - at);
+        block[at] = key;
+        sizes[b] = n + 1;
+        size++;
+    }
+
+    boolean remove(long key) {
+        if (blockCount == 0) {
+            return false;
+        }
+        int b = blockFor(key);
+        long[] block = blocks[b];
+        int n = sizes[b];
+        int at = search(block, n, key);
+        if (at < 0) {
+            return false;
+        }
+        System.arraycopy(block, at + 1, block, at, n - at - 1);
+        sizes[b] = n - 1;
+        size--;
+        if (sizes[b] == 0) {
+            System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+            System.arraycopy(sizes, b + 1, sizes, b, blockCount - b - 1);
+            blockCount--;
+            blocks[blockCount] = null;
+        }
+        return true;
+    }
+
+    boolean contains(long key) {
+        if (blockCount == 0) {
+            return false;
+        }
+        int b = blockFor(key);
+        return search(blocks[b], sizes[b], key) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Copies up to out.length keys strictly greater than after into out, returning how
+    // many were copied. Pass Long.MIN_VALUE to start from the smallest key.
+    int next(long after, long[] out) {
+        if (blockCount == 0) {
+            return 0;
+        }
+        int b = blockFor(after);
+        int at = search(blocks[b], sizes[b], after);
+        at = at >= 0 ? at + 1 : -at - 1;
+        int copied = 0;
+        while (b < blockCount && copied < out.length) {
+            int take = Math.min(sizes[b] - at, out.length - copied);
+            System.arraycopy(blocks[b], at, out, copied, take);
+            copied += take;
+            b++;
+            at = 0;
+        }
+        return copied;
+    }
+
+    // Number of keys strictly greater than after
+    int countAfter(long after) {
+        if (blockCount == 0) {
+            return 0;
+        }
+        int b = blockFor(after);
+        int at = search(blocks[b], sizes[b], after);
+        at = at >= 0 ? at + 1 : -at - 1;
+        int count = sizes[b] - at;
+        for (int i = b + 1; i < blockCount; i++) {
+            count += sizes[i];
+        }
+        return count;
+    }
+
+    // Last block whose first key is <= key (or the first block)
+    private int blockFor(long key) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid][0] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void split(int b) {
+        if (blockCount == blocks.length) {
+            long[][] grownBlocks = new long[blocks.length * 2][];
+            int[] grownSizes = new int[blocks.length * 2];
+            System.arraycopy(blocks, 0, grownBlocks, 0, blockCount);
+            System.arraycopy(sizes, 0, grownSizes, 0, blockCount);
+            blocks = grownBlocks;
+            sizes = grownSizes;
+        }
+        System.arraycopy(blocks, b + 1, blocks, b + 2, blockCount - b - 1);
+        System.arraycopy(sizes, b + 1, sizes, b + 2, blockCount - b - 1);
+        long[] upper = new long[BLOCK];
+        System.arraycopy(blocks[b], BLOCK / 2, upper, 0, BLOCK / 2);
+        blocks[b + 1] = upper;
+        sizes[b + 1] = BLOCK / 2;
+        sizes[b] = BLOCK / 2;
+        blockCount++;
+    }
+
+    private static int search(long[] block, int n, long key) {
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = block[mid];
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,469 @@
+package com.expensetracker.store;
+
+import com.expensetracker.model.Expense;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of expense mutations, split into numbered segment files.
+//
+// Appends only encode into an in-memory buffer. A background thread swaps that
+// buffer out, writes it with one FileChannel call and fsyncs, so every record
+// appended while the previous fsync was running shares the next one (group
+// commit). Writers that need durability call awaitDurable with the sequence
+// number returned by append.
+//
+// Record: length (4) | CRC32 of payload (4) | payload = type (1) | body
+public class WriteAheadLog implements AutoCloseable {
+
+    public interface Replayer {
+        void put(Expense expense);
+
+        void delete(long id);
+    }
+
+    private static final int MAGIC = 0x45585057; // "EXPW"
+    // Row format version, see ExpenseCodec; older segments are still replayed
+    private static final int VERSION = ExpenseCodec.VERSION;
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+    // count (4) | (type (1) | body)* - the whole batch shares one CRC, so a torn
+    // write drops all of it and replay never sees half a batch
+    private static final byte BATCH = 4;
+
+    // Operations encoded together and appended as a single record
+    public static class Batch {
+        private ByteBuffer buffer = ByteBuffer.allocate(1024).position(4);
+        private int count;
+
+        public void add(Expense expense) {
+            put(ADD, expense);
+        }
+
+        public void update(Expense expense) {
+            put(UPDATE, expense);
+        }
+
+        public void delete(long id) {
+            ensure(1 + 8).put(DELETE).putLong(id);
+            count++;
+        }
+
+        private void put(byte type, Expense expense) {
+            byte[] category = ExpenseCodec.utf8(expense.getCategory());
+            byte[] description = ExpenseCodec.utf8(expense.getDescription());
+            ExpenseCodec.write(ensure(1 + ExpenseCodec.encodedSize(category, description)).put(type),
+                    expense, category, description);
+            count++;
+        }
+
+        private ByteBuffer ensure(int size) {
+            if (buffer.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            return buffer;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    private final Path dir;
+    private final boolean syncWrites;
+    private final ReentrantLock ioLock = new ReentrantLock();
+    // A j.u.c lock rather than monitors so virtual-thread writers blocked in
+    // awaitDurable unmount instead of pinning their carrier thread
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private final Condition dataPending = stateLock.newCondition();
+    private final Condition durableAdvanced = stateLock.newCondition();
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by stateLock
+    private ByteBuffer pending = ByteBuffer.allocateDirect(64 * 1024);
+    private ByteBuffer flushing = ByteBuffer.allocateDirect(64 * 1024);
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    // Guarded by ioLock
+    private FileChannel channel;
+    private long segment;
+
+    private Thread syncThread;
+
+    public WriteAheadLog(Path dir, boolean syncWrites) {
+        this.dir = dir;
+        this.syncWrites = syncWrites;
+    }
+
+    // Replays every segment numbered fromSegment or later, oldest first. A torn or
+    // corrupt record ends its segment: it was never acknowledged as durable.
+    // Returns the number of records applied.
+    public long replay(long fromSegment, Replayer replayer) throws IOException {
+        long applied = 0;
+        for (long number : segments()) {
+            if (number < fromSegment) {
+                continue;
+            }
+            Path path = segmentPath(number);
+            try (InputStream in = Files.newInputStream(path)) {
+                applied += replaySegment(new DataInputStream(new BufferedInputStream(in, 1 << 16)),
+                        Files.size(path), replayer);
+            }
+        }
+        return applied;
+    }
+
+    private long replaySegment(DataInputStream in, long size, Replayer replayer) throws IOException {
+        int version;
+        try {
+            if (in.readInt() != MAGIC) {
+                return 0;
+            }
+            version = in.readInt();
+            if (version < ExpenseCodec.DOUBLE_AMOUNTS || version > VERSION) {
+                return 0;
+            }
+        } catch (EOFException e) {
+            return 0;
+        }
+        long applied = 0;
+        long position = 8;
+        CRC32 check = new CRC32();
+        byte[] payload = new byte[256];
+        while (true) {
+            int length;
+            int expectedCrc;
+            try {
+                length = in.readInt();
+                expectedCrc = in.readInt();
+                position += 8;
+                // A torn header can hold any length; one that runs past the end of
+                // the file is a truncated tail, not a reason to allocate it
+                if (length <= 0 || length > size - position) {
+                    return applied;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+                position += length;
+            } catch (EOFException e) {
+                return applied;
+            }
+            check.reset();
+            check.update(payload, 0, length);
+            if ((int) check.getValue() != expectedCrc) {
+                return applied;
+            }
+            ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+            byte type = record.get();
+            if (type == BATCH) {
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    apply(record.get(), record, version, replayer);
+                }
+            } else {
+                apply(type, record, version, replayer);
+            }
+            applied++;
+        }
+    }
+
+    private static void apply(byte type, ByteBuffer record, int version, Replayer replayer) {
+        if (type == DELETE) {
+            replayer.delete(record.getLong());
+        } else {
+            replayer.put(ExpenseCodec.read(record, version));
+        }
+    }
+
+    // Starts a fresh segment after any existing ones and begins background syncing
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> existing = segments();
+        ioLock.lock();
+        try {
+            segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+            channel = openSegment(segment);
+        } finally {
+            ioLock.unlock();
+        }
+        syncThread = new Thread(this::syncLoop, "wal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    public long appendAdd(Expense expense) {
+        return appendPut(ADD, expense);
+    }
+
+    public long appendUpdate(Expense expense) {
+        return appendPut(UPDATE, expense);
+    }
+
+    public long appendDelete(long id) {
+        stateLock.lock();
+        try {
+            ByteBuffer buffer = reserve(1 + 8);
+            int start = buffer.position();
+            buffer.put(DELETE).putLong(id);
+            return finishRecord(buffer, start);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private long appendPut(byte type, Expense expense) {
+        // Encode strings outside the lock; only the buffer copy is serialized
+        byte[] category = ExpenseCodec.utf8(expense.getCategory());
+        byte[] description = ExpenseCodec.utf8(expense.getDescription());
+        stateLock.lock();
+        try {
+            ByteBuffer buffer = reserve(1 + ExpenseCodec.encodedSize(category, description));
+            int start = buffer.position();
+            buffer.put(type);
+            ExpenseCodec.write(buffer, expense, category, description);
+            return finishRecord(buffer, start);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public long append(Batch batch) {
+        ByteBuffer encoded = batch.buffer.duplicate().flip();
+        encoded.putInt(0, batch.count);
+        stateLock.lock();
+        try {
+            ByteBuffer buffer = reserve(1 + encoded.remaining());
+            int start = buffer.position();
+            buffer.put(BATCH).put(encoded);
+            return finishRecord(buffer, start);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private ByteBuffer reserve(int payloadSize) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        int needed = 8 + payloadSize;
+        if (pending.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.position(pending.position() + 8);
+        return pending;
+    }
+
+    private long finishRecord(ByteBuffer buffer, int payloadStart) {
+        int length = buffer.position() - payloadStart;
+        crc.reset();
+        crc.update(buffer.duplicate().position(payloadStart).limit(payloadStart + length));
+        buffer.putInt(payloadStart - 8, length);
+        buffer.putInt(payloadStart - 4, (int) crc.getValue());
+        appendedSeq++;
+        dataPending.signal();
+        return appendedSeq;
+    }
+
+    // Blocks until the record with this sequence number has been fsynced. A no-op
+    // when the log was opened with syncWrites disabled.
+    public void awaitDurable(long seq) {
+        if (!syncWrites) {
+            return;
+        }
+        stateLock.lock();
+        try {
+            while (durableSeq < seq && failure == null) {
+                durableAdvanced.awaitUninterruptibly();
+            }
+            if (durableSeq < seq) {
+                throw new UncheckedIOException("Write-ahead log failed", failure);
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public long appendedCount() {
+        stateLock.lock();
+        try {
+            return appendedSeq;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            stateLock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    dataPending.await();
+                }
+                if (closed && pending.position() == 0) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                stateLock.unlock();
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // Writes and fsyncs everything appended so far
+    private void flush() throws IOException {
+        ioLock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            long target;
+            stateLock.lock();
+            try {
+                ByteBuffer swap = pending;
+                pending = flushing;
+                flushing = swap;
+                target = appendedSeq;
+            } finally {
+                stateLock.unlock();
+            }
+            try {
+                flushing.flip();
+                while (flushing.hasRemaining()) {
+                    channel.write(flushing);
+                }
+                flushing.clear();
+                channel.force(false);
+            } catch (IOException e) {
+                stateLock.lock();
+                try {
+                    failure = e;
+                    durableAdvanced.signalAll();
+                } finally {
+                    stateLock.unlock();
+                }
+                throw e;
+            }
+            stateLock.lock();
+            try {
+                durableSeq = Math.max(durableSeq, target);
+                durableAdvanced.signalAll();
+            } finally {
+                stateLock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Seals the current segment and starts a new one. Returns the new segment
+    // number: a snapshot taken after this call only needs segments from it onwards.
+    public long rotate() throws IOException {
+        ioLock.lock();
+        try {
+            flush();
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    public void deleteSegmentsBefore(long number) throws IOException {
+        for (long existing : segments()) {
+            if (existing < number) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ioLock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            stateLock.lock();
+            try {
+                closed = true;
+                dataPending.signal();
+            } finally {
+                stateLock.unlock();
+            }
+            try {
+                flush();
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        FileChannel opened = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            opened.write(header);
+        }
+        opened.force(true);
+        return opened;
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("wal-%016d.log", number));
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("wal-") && name.endsWith(".log"))
+                    .forEach(name -> numbers.add(Long.parseLong(name.substring(4, name.length() - 4))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+}
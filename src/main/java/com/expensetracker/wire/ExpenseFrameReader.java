@@ -0,0 +1,180 @@
+package com.expensetracker.wire;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+// Client-side decoder for the frames written by ExpenseFrameWriter, e.g.
+//
+//   HttpURLConnection connection = (HttpURLConnection) new URL(base + "/api/expenses").openConnection();
+//   connection.setRequestProperty("Accept", ExpenseFrameReader.MEDIA_TYPE);
+//   List<ExpenseFrameReader.Row> rows = ExpenseFrameReader.readAll(connection.getInputStream());
+//
+// Uses only the JDK, so it can be copied into a client on its own.
+public final class ExpenseFrameReader {
+    public static final String MEDIA_TYPE = "application/x-expense-frames";
+    private static final byte[] MAGIC = {'E', 'X', 'P', 'F'};
+    private static final int VERSION = 1;
+    // Larger lengths can only come from a corrupt or foreign stream
+    private static final int MAX_LENGTH = 1 << 28;
+
+    public record Row(long id, LocalDate date, String category, long amountCents, String description) {}
+
+    private final DataInputStream in;
+    private final Currency currency;
+    private final int decimals;
+    private String[] dictionary = new String[16];
+    private int dictionarySize;
+    private long lastId;
+    private long lastDay;
+    private boolean ended;
+
+    // Reads and checks the stream header
+    public ExpenseFrameReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        byte[] magic = new byte[MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an expense frame stream");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported expense frame version " + version);
+        }
+        byte[] code = new byte[3];
+        this.in.readFully(code);
+        this.currency = Currency.getInstance(new String(code, StandardCharsets.US_ASCII));
+        this.decimals = this.in.readUnsignedByte();
+    }
+
+    public static List<Row> readAll(InputStream in) throws IOException {
+        ExpenseFrameReader reader = new ExpenseFrameReader(in);
+        List<Row> rows = new ArrayList<>();
+        for (List<Row> block = reader.nextBlock(); block != null; block = reader.nextBlock()) {
+            rows.addAll(block);
+        }
+        return rows;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    // Amounts are in minor units: divide by 10^decimals for the currency amount
+    public int getDecimals() {
+        return decimals;
+    }
+
+    // The next block of rows, or null once the end marker has been read
+    public List<Row> nextBlock() throws IOException {
+        if (ended) {
+            return null;
+        }
+        int rows = length(readUnsigned(in));
+        if (rows == 0) {
+            ended = true;
+            return null;
+        }
+        int added = length(readUnsigned(in));
+        for (int i = 0; i < added; i++) {
+            byte[] name = new byte[length(readUnsigned(in))];
+            in.readFully(name);
+            if (dictionarySize == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+            }
+            dictionary[dictionarySize++] = new String(name, StandardCharsets.UTF_8);
+        }
+        Column ids = column();
+        Column days = column();
+        Column categories = column();
+        Column amounts = column();
+        Column descriptions = column();
+
+        List<Row> block = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            lastId += ids.readSigned();
+            lastDay += days.readSigned();
+            long category = categories.readUnsigned();
+            if (category >= dictionarySize) {
+                throw new IOException("Unknown category index " + category);
+            }
+            long amount = amounts.readSigned();
+            int descriptionLength = length(descriptions.readUnsigned());
+            String description = descriptionLength == 0 ? null : descriptions.readString(descriptionLength - 1);
+            block.add(new Row(lastId, LocalDate.ofEpochDay(lastDay), dictionary[(int) category], amount, description));
+        }
+        return block;
+    }
+
+    private Column column() throws IOException {
+        byte[] bytes = new byte[length(readUnsigned(in))];
+        in.readFully(bytes);
+        return new Column(bytes);
+    }
+
+    private static int length(long value) throws IOException {
+        if (value < 0 || value > MAX_LENGTH) {
+            throw new IOException("Corrupt expense frame");
+        }
+        return (int) value;
+    }
+
+    private static long readUnsigned(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt expense frame");
+    }
+
+    // One column's bytes, read front to back
+    private static final class Column {
+        final byte[] bytes;
+        int position;
+
+        Column(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == bytes.length) {
+                    throw new EOFException("Expense frame column ended early");
+                }
+                int b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt expense frame");
+        }
+
+        long readSigned() throws IOException {
+            long value = readUnsigned();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        String readString(int length) throws IOException {
+            if (length > bytes.length - position) {
+                throw new EOFException("Expense frame column ended early");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.expensetracker.wire;
+
+import com.expensetracker.model.Expense;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+// Encodes expense rows as columnar binary frames, the representation of
+// GET /api/expenses for Accept: application/x-expense-frames. Rows are buffered
+// a block at a time, so any number can be streamed in bounded memory.
+//
+// Stream:  "EXPF" | version (1) | currency code (3 ASCII) | decimals (1) | block* | 0
+// Block:   rows (varint, > 0)
+//          new categories (varint) followed by each as length (varint) + UTF-8
+//          five columns, each its byte length (varint) followed by rows values:
+//            id          zigzag varint, delta from the previous row's id
+//            epoch day   zigzag varint, delta from the previous row's day
+//            category    varint index into the stream's category dictionary
+//            amount      zigzag varint, in the currency's minor units
+//            description varint length + 1 (0 for null) followed by UTF-8
+//
+// Categories get indexes in order of first use; a block lists only the names
+// it adds. Deltas run across blocks, starting from 0. Rows come newest first,
+// so day deltas are mostly 0 and ids shrink to a byte or two. ExpenseFrameReader
+// is the matching decoder.
+public final class ExpenseFrameWriter {
+    public static final String MEDIA_TYPE = "application/x-expense-frames";
+    static final byte[] MAGIC = {'E', 'X', 'P', 'F'};
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 4096;
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final Bytes newCategories = new Bytes();
+    private int newCategoryCount;
+    private final Bytes ids = new Bytes();
+    private final Bytes days = new Bytes();
+    private final Bytes categories = new Bytes();
+    private final Bytes amounts = new Bytes();
+    private final Bytes descriptions = new Bytes();
+    private final Bytes block = new Bytes();
+    private int rows;
+    private long lastId;
+    private long lastDay;
+
+    // Writes the stream header
+    public ExpenseFrameWriter(OutputStream out, Currency currency) throws IOException {
+        this.out = out;
+        block.write(MAGIC);
+        block.write(VERSION);
+        block.write(currency.getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+        block.write(currency.getDefaultFractionDigits());
+        block.writeTo(out);
+    }
+
+    public void write(Expense expense) throws IOException {
+        write(expense.getId(), expense.getDate().toEpochDay(), expense.getCategory(),
+                expense.getAmountCents(), expense.getDescription());
+    }
+
+    public void write(long id, long epochDay, String category, long amountCents, String description)
+            throws IOException {
+        Integer index = dictionary.get(category);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(category, index);
+            newCategories.writeString(category);
+            newCategoryCount++;
+        }
+        ids.writeSigned(id - lastId);
+        days.writeSigned(epochDay - lastDay);
+        categories.writeUnsigned(index);
+        amounts.writeSigned(amountCents);
+        if (description == null) {
+            descriptions.writeUnsigned(0);
+        } else {
+            byte[] utf8 = description.getBytes(StandardCharsets.UTF_8);
+            descriptions.writeUnsigned(utf8.length + 1L);
+            descriptions.write(utf8);
+        }
+        lastId = id;
+        lastDay = epochDay;
+        if (++rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    // Writes the buffered rows and the end marker and flushes; the stream itself stays open
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeBlock();
+        }
+        out.write(0);
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        block.writeUnsigned(rows);
+        block.writeUnsigned(newCategoryCount);
+        block.write(newCategories);
+        for (Bytes column : new Bytes[] {ids, days, categories, amounts, descriptions}) {
+            block.writeUnsigned(column.length);
+            block.write(column);
+        }
+        block.writeTo(out);
+        for (Bytes column : new Bytes[] {newCategories, ids, days, categories, amounts, descriptions}) {
+            column.length = 0;
+        }
+        newCategoryCount = 0;
+        rows = 0;
+    }
+
+    // A growable byte array with varint writers
+    private static final class Bytes {
+        byte[] bytes = new byte[1024];
+        int length;
+
+        void write(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void write(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        void write(Bytes value) {
+            ensure(value.length);
+            System.arraycopy(value.bytes, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        // Seven bits per byte, low bits first, high bit set on all but the last
+        void writeUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        // Zigzag, so small negative values stay short too
+        void writeSigned(long value) {
+            writeUnsigned(value << 1 ^ value >> 63);
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(utf8.length);
+            write(utf8);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+            length = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}